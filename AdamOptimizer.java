@@ -0,0 +1,92 @@
+package Layer;
+
+import data.Tensor;
+
+// Adam (Kingma & Ba) with bias-corrected first and second moments of the batch-mean gradient.
+public class AdamOptimizer implements Optimizer {
+
+    private final double beta1;
+    private final double beta2;
+    private final double epsilon;
+
+    public AdamOptimizer() {
+        this(0.9, 0.999, 1e-8);
+    }
+
+    public AdamOptimizer(double beta1, double beta2, double epsilon) {
+        if (beta1 < 0 || beta1 >= 1 || beta2 < 0 || beta2 >= 1) {
+            throw new IllegalArgumentException("Betas must be in [0, 1): " + beta1 + ", " + beta2);
+        }
+        this.beta1 = beta1;
+        this.beta2 = beta2;
+        this.epsilon = epsilon;
+    }
+
+    @Override
+    public State newState(Tensor parameters) {
+        return parameters.isFloat() ? new FloatState(parameters.size()) : new DoubleState(parameters.size());
+    }
+
+    private class DoubleState implements State {
+
+        private final double[] m;
+        private final double[] v;
+        private int t;
+
+        DoubleState(int size) {
+            this.m = new double[size];
+            this.v = new double[size];
+        }
+
+        @Override
+        public void apply(Tensor parameters, Tensor gradients, double learningRate, int batchSize) {
+            double[] w = parameters.data();
+            double[] g = gradients.data();
+            double scale = 1.0 / batchSize;
+
+            t++;
+            double step = learningRate * Math.sqrt(1 - Math.pow(beta2, t)) / (1 - Math.pow(beta1, t));
+
+            for (int k = 0; k < w.length; k++) {
+                double gradient = g[k] * scale;
+                m[k] = beta1 * m[k] + (1 - beta1) * gradient;
+                v[k] = beta2 * v[k] + (1 - beta2) * gradient * gradient;
+                w[k] -= step * m[k] / (Math.sqrt(v[k]) + epsilon);
+                g[k] = 0;
+            }
+        }
+    }
+
+    private class FloatState implements State {
+
+        private final float[] m;
+        private final float[] v;
+        private int t;
+
+        FloatState(int size) {
+            this.m = new float[size];
+            this.v = new float[size];
+        }
+
+        @Override
+        public void apply(Tensor parameters, Tensor gradients, double learningRate, int batchSize) {
+            float[] w = parameters.floatData();
+            float[] g = gradients.floatData();
+            float b1 = (float) beta1;
+            float b2 = (float) beta2;
+            float eps = (float) epsilon;
+            float scale = 1f / batchSize;
+
+            t++;
+            float step = (float) (learningRate * Math.sqrt(1 - Math.pow(beta2, t)) / (1 - Math.pow(beta1, t)));
+
+            for (int k = 0; k < w.length; k++) {
+                float gradient = g[k] * scale;
+                m[k] = b1 * m[k] + (1 - b1) * gradient;
+                v[k] = b2 * v[k] + (1 - b2) * gradient * gradient;
+                w[k] -= step * m[k] / ((float) Math.sqrt(v[k]) + eps);
+                g[k] = 0;
+            }
+        }
+    }
+}
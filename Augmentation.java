@@ -0,0 +1,174 @@
+package data;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+// Random shifts, rotations, elastic distortion and pixel noise for MNIST-style digits. A transform is a pure
+// function of the source image and its seed, so an augmented epoch is reproducible whichever thread
+// transforms which image.
+public class Augmentation {
+
+    private final double maxShift;
+    private final double maxRotation;
+    private final double elasticAlpha;
+    private final double noiseStddev;
+    private final double[] elasticKernel;
+
+    // maxShift is in pixels and elasticAlpha scales the smoothed displacement field (Simard et al. use alpha 34,
+    // sigma 4 on 28x28 digits); a zero disables that part of the transform.
+    public Augmentation(double maxShift, double maxRotationDegrees, double elasticAlpha, double elasticSigma, double noiseStddev) {
+        if (maxShift < 0 || maxRotationDegrees < 0 || elasticAlpha < 0 || noiseStddev < 0) {
+            throw new IllegalArgumentException("Augmentation magnitudes must not be negative");
+        }
+        if (elasticAlpha > 0 && elasticSigma <= 0) {
+            throw new IllegalArgumentException("Elastic sigma must be positive: " + elasticSigma);
+        }
+
+        this.maxShift = maxShift;
+        this.maxRotation = Math.toRadians(maxRotationDegrees);
+        this.elasticAlpha = elasticAlpha;
+        this.noiseStddev = noiseStddev;
+        this.elasticKernel = elasticAlpha > 0 ? gaussianKernel(elasticSigma) : null;
+    }
+
+    private static double[] gaussianKernel(double sigma) {
+        int radius = (int) Math.ceil(3 * sigma);
+        double[] kernel = new double[2 * radius + 1];
+        double sum = 0;
+
+        for (int i = -radius; i <= radius; i++) {
+            kernel[i + radius] = Math.exp(-i * i / (2 * sigma * sigma));
+            sum += kernel[i + radius];
+        }
+        for (int i = 0; i < kernel.length; i++) {
+            kernel[i] /= sum;
+        }
+
+        return kernel;
+    }
+
+    // Per-thread buffers, grown to the largest image seen.
+    static final class Scratch {
+
+        final Random random = new Random();
+        float[] source = new float[0];
+        float[] dx = new float[0];
+        float[] dy = new float[0];
+        float[] blurred = new float[0];
+
+        void ensure(int pixels) {
+            if (source.length < pixels) {
+                source = new float[pixels];
+                dx = new float[pixels];
+                dy = new float[pixels];
+                blurred = new float[pixels];
+            }
+        }
+    }
+
+    public Image apply(Image image, long seed) {
+        byte[] pixels = new byte[image.getRows() * image.getCols()];
+        apply(image, seed, pixels, 0, new Scratch());
+        return new Image(ByteBuffer.wrap(pixels), image.getRows(), image.getCols(), image.getLabel());
+    }
+
+    // Writes the transformed pixels of image to target[offset...], row-major. Each output pixel is sampled
+    // bilinearly from the source at its inversely rotated and shifted position plus the elastic displacement;
+    // positions outside the image read as background.
+    void apply(Image image, long seed, byte[] target, int offset, Scratch scratch) {
+        int rows = image.getRows();
+        int cols = image.getCols();
+        int pixels = rows * cols;
+        Random random = scratch.random;
+
+        scratch.ensure(pixels);
+        random.setSeed(seed);
+
+        for (int k = 0; k < pixels; k++) {
+            scratch.source[k] = image.getPixel(k);
+        }
+
+        double angle = (2 * random.nextDouble() - 1) * maxRotation;
+        double shiftX = (2 * random.nextDouble() - 1) * maxShift;
+        double shiftY = (2 * random.nextDouble() - 1) * maxShift;
+        boolean elastic = elasticKernel != null;
+
+        if (elastic) {
+            displacementField(scratch.dx, scratch, rows, cols);
+            displacementField(scratch.dy, scratch, rows, cols);
+        }
+
+        double cos = Math.cos(angle);
+        double sin = Math.sin(angle);
+        double centerY = (rows - 1) / 2.0;
+        double centerX = (cols - 1) / 2.0;
+
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < cols; c++) {
+                double u = c - centerX - shiftX;
+                double v = r - centerY - shiftY;
+                double x = cos * u + sin * v + centerX;
+                double y = -sin * u + cos * v + centerY;
+
+                if (elastic) {
+                    x += scratch.dx[r * cols + c];
+                    y += scratch.dy[r * cols + c];
+                }
+
+                double value = sample(scratch.source, rows, cols, y, x);
+
+                if (noiseStddev > 0) {
+                    value += noiseStddev * random.nextGaussian();
+                }
+
+                target[offset + r * cols + c] = (byte) Math.max(0, Math.min(255, Math.round(value)));
+            }
+        }
+    }
+
+    // Uniform noise in [-1, 1] smoothed by the separable Gaussian and scaled by alpha.
+    private void displacementField(float[] field, Scratch scratch, int rows, int cols) {
+        float[] blurred = scratch.blurred;
+        int radius = elasticKernel.length / 2;
+
+        for (int k = 0; k < rows * cols; k++) {
+            field[k] = (float) (2 * scratch.random.nextDouble() - 1);
+        }
+
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < cols; c++) {
+                double sum = 0;
+
+                for (int i = Math.max(-radius, -c); i <= Math.min(radius, cols - 1 - c); i++) {
+                    sum += elasticKernel[i + radius] * field[r * cols + c + i];
+                }
+                blurred[r * cols + c] = (float) sum;
+            }
+        }
+
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < cols; c++) {
+                double sum = 0;
+
+                for (int i = Math.max(-radius, -r); i <= Math.min(radius, rows - 1 - r); i++) {
+                    sum += elasticKernel[i + radius] * blurred[(r + i) * cols + c];
+                }
+                field[r * cols + c] = (float) (elasticAlpha * sum);
+            }
+        }
+    }
+
+    private static double sample(float[] source, int rows, int cols, double y, double x) {
+        int y0 = (int) Math.floor(y);
+        int x0 = (int) Math.floor(x);
+        double fy = y - y0;
+        double fx = x - x0;
+
+        return (1 - fy) * ((1 - fx) * pixel(source, rows, cols, y0, x0) + fx * pixel(source, rows, cols, y0, x0 + 1))
+                + fy * ((1 - fx) * pixel(source, rows, cols, y0 + 1, x0) + fx * pixel(source, rows, cols, y0 + 1, x0 + 1));
+    }
+
+    private static float pixel(float[] source, int rows, int cols, int r, int c) {
+        return r < 0 || r >= rows || c < 0 || c >= cols ? 0 : source[r * cols + c];
+    }
+}
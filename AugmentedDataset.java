@@ -0,0 +1,175 @@
+package data;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Wraps another dataset and augments its batches on worker threads ahead of the trainer. Each image's transform
+// is seeded from the dataset seed, the epoch and the image's position, so epochs are reproducible whenever the
+// source is. Augmented pixels go into a ring of reused batch buffers: a batch stays valid until the consumer
+// has requested inFlight further batches. NeuralNetwork and ParallelTrainer hold one batch at a time; a
+// HogwildTrainer holds one per thread.
+public class AugmentedDataset implements Dataset {
+
+    private static final List<Image> END = new ArrayList<>();
+
+    private final Dataset source;
+    private final Augmentation augmentation;
+    private final int workers;
+    private final int prefetch;
+    private final int inFlight;
+    private final Random random;
+
+    public AugmentedDataset(Dataset source, Augmentation augmentation, int workers, long seed) {
+        this(source, augmentation, workers, 2 * workers, 1, seed);
+    }
+
+    public AugmentedDataset(Dataset source, Augmentation augmentation, int workers, int prefetch, int inFlight, long seed) {
+        if (workers < 1 || prefetch < 1 || inFlight < 1) {
+            throw new IllegalArgumentException("Worker count, prefetch depth and in-flight batches must be positive");
+        }
+
+        this.source = source;
+        this.augmentation = augmentation;
+        this.workers = workers;
+        this.prefetch = prefetch;
+        this.inFlight = inFlight;
+        this.random = new Random(seed);
+    }
+
+    @Override
+    public BatchIterator batches(int batchSize) {
+        return new AugmentingIterator(source.batches(batchSize), random.nextLong());
+    }
+
+    // SplitMix64 finalizer, so neighbouring images get unrelated seeds.
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    // Pixel buffer and transform scratch for one batch; batch i always uses slot i % slots.length.
+    private static final class Slot {
+
+        final Augmentation.Scratch scratch = new Augmentation.Scratch();
+        byte[] pixels = new byte[0];
+    }
+
+    private class AugmentingIterator implements BatchIterator {
+
+        private final BlockingQueue<Future<List<Image>>> queue = new ArrayBlockingQueue<>(prefetch);
+        private final ExecutorService executor;
+        private final Thread producer;
+        // The consumer's batches, the queued ones and the one waiting to be queued are alive at once.
+        private final Slot[] slots = new Slot[prefetch + inFlight + 1];
+        private volatile RuntimeException failure;
+        private List<Image> next;
+
+        AugmentingIterator(BatchIterator batches, long epochSeed) {
+            for (int i = 0; i < slots.length; i++) {
+                slots[i] = new Slot();
+            }
+
+            executor = Executors.newFixedThreadPool(workers, task -> {
+                Thread thread = new Thread(task, "dataset-augmentation");
+                thread.setDaemon(true);
+                return thread;
+            });
+            producer = new Thread(() -> produce(batches, epochSeed), "dataset-augmentation-feed");
+            producer.setDaemon(true);
+            producer.start();
+        }
+
+        private void produce(BatchIterator batches, long epochSeed) {
+            try (batches) {
+                for (long index = 0; batches.hasNext(); index++) {
+                    List<Image> batch = batches.next();
+                    Slot slot = slots[(int) (index % slots.length)];
+                    long batchSeed = epochSeed + index * batch.size();
+
+                    queue.put(executor.submit(() -> augment(batch, slot, batchSeed)));
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+
+            try {
+                queue.put(CompletableFuture.completedFuture(END));
+            } catch (InterruptedException ignored) {
+            }
+        }
+
+        private List<Image> augment(List<Image> batch, Slot slot, long batchSeed) {
+            Image first = batch.get(0);
+            int pixels = first.getRows() * first.getCols();
+            List<Image> augmented = new ArrayList<>(batch.size());
+
+            if (slot.pixels.length < batch.size() * pixels) {
+                slot.pixels = new byte[batch.size() * pixels];
+            }
+
+            for (int b = 0; b < batch.size(); b++) {
+                Image image = batch.get(b);
+
+                augmentation.apply(image, mix(batchSeed + b), slot.pixels, b * pixels, slot.scratch);
+                augmented.add(new Image(ByteBuffer.wrap(slot.pixels, b * pixels, pixels).slice(), image.getRows(), image.getCols(), image.getLabel()));
+            }
+
+            return augmented;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null) {
+                try {
+                    next = queue.take().get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for data", e);
+                } catch (ExecutionException e) {
+                    close();
+                    throw new IllegalStateException("Augmentation worker failed", e.getCause());
+                }
+            }
+
+            if (next == END) {
+                executor.shutdown();
+
+                if (failure != null) {
+                    throw failure;
+                }
+            }
+
+            return next != END;
+        }
+
+        @Override
+        public List<Image> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            List<Image> batch = next;
+            next = null;
+            return batch;
+        }
+
+        @Override
+        public void close() {
+            producer.interrupt();
+            executor.shutdownNow();
+        }
+    }
+}
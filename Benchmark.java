@@ -0,0 +1,98 @@
+package benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+
+// Minimal timing harness: warms the operation up, then reports throughput and bytes allocated per
+// operation on the calling thread (HotSpot's per-thread allocation counter).
+public class Benchmark {
+
+    private static volatile Object sink;
+
+    private final int warmupIterations;
+    private final int measurementIterations;
+    private final long iterationNanos;
+    private final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public Benchmark(int warmupIterations, int measurementIterations, long iterationMillis) {
+        this.warmupIterations = warmupIterations;
+        this.measurementIterations = measurementIterations;
+        this.iterationNanos = iterationMillis * 1_000_000L;
+    }
+
+    public interface Operation {
+        Object run() throws Exception;
+    }
+
+    public Result run(String name, Operation operation) {
+        try {
+            for (int i = 0; i < warmupIterations; i++) {
+                measure(operation);
+            }
+
+            double bestOpsPerSecond = 0;
+            double totalOpsPerSecond = 0;
+            double bytesPerOp = 0;
+
+            for (int i = 0; i < measurementIterations; i++) {
+                double[] sample = measure(operation);
+                bestOpsPerSecond = Math.max(bestOpsPerSecond, sample[0]);
+                totalOpsPerSecond += sample[0];
+                bytesPerOp = sample[1];
+            }
+
+            Result result = new Result(name, totalOpsPerSecond / measurementIterations, bestOpsPerSecond, bytesPerOp);
+            System.out.println(result);
+            return result;
+        } catch (Exception e) {
+            throw new IllegalStateException("Benchmark " + name + " failed", e);
+        }
+    }
+
+    private double[] measure(Operation operation) throws Exception {
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        long elapsed;
+        long ops = 0;
+
+        do {
+            sink = operation.run();
+            ops++;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < iterationNanos);
+
+        long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+        return new double[]{ops * 1e9 / elapsed, (double) allocated / ops};
+    }
+
+    public static class Result {
+
+        private final String name;
+        private final double opsPerSecond;
+        private final double bestOpsPerSecond;
+        private final double bytesPerOp;
+
+        Result(String name, double opsPerSecond, double bestOpsPerSecond, double bytesPerOp) {
+            this.name = name;
+            this.opsPerSecond = opsPerSecond;
+            this.bestOpsPerSecond = bestOpsPerSecond;
+            this.bytesPerOp = bytesPerOp;
+        }
+
+        public double getOpsPerSecond() {
+            return opsPerSecond;
+        }
+
+        public double getBytesPerOp() {
+            return bytesPerOp;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%-40s %14.2f ops/s (best %.2f) %14.1f B/op",
+                    name, opsPerSecond, bestOpsPerSecond, bytesPerOp);
+        }
+    }
+}
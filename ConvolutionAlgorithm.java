@@ -0,0 +1,60 @@
+package Layer;
+
+import data.Precision;
+
+public enum ConvolutionAlgorithm {
+    DIRECT,
+    IM2COL,
+    // Winograd F(2x2, 3x3); other filter sizes and strides run directly.
+    WINOGRAD,
+    // Winograd F(4x4, 3x3): fewer multiplies than F(2x2, 3x3) but more transform additions.
+    WINOGRAD_4X4,
+    FFT,
+    // Resolved by ConvolutionLayer to one of the others through select.
+    AUTO;
+
+    public ConvolutionEngine createEngine() {
+        switch (this) {
+            case IM2COL:
+                return new Im2colConvolutionEngine();
+            case WINOGRAD:
+                return new WinogradConvolutionEngine(WinogradConvolutionEngine.F2);
+            case WINOGRAD_4X4:
+                return new WinogradConvolutionEngine(WinogradConvolutionEngine.F4);
+            case FFT:
+                return new FftConvolutionEngine();
+            case AUTO:
+                throw new IllegalStateException("AUTO must be resolved with select before creating an engine");
+            case DIRECT:
+            default:
+                return new DirectConvolutionEngine();
+        }
+    }
+
+    // Direct convolution vectorizes along output rows, so on narrow rows most of its work is the scalar tail;
+    // Winograd works on whole planes of tiles and wins there. For larger filters the FFT path wins once its
+    // per-filter transform cost, roughly FFT_COST * cells * log2(cells) on the padded grid, drops below the
+    // filterSize^2 multiply-adds per output of direct convolution.
+    public static ConvolutionAlgorithm select(int filterSize, int stepSize, int inputRows, int inputCols, Precision precision) {
+        if (stepSize != 1) {
+            return DIRECT;
+        }
+
+        int outputRows = inputRows - filterSize + 1;
+        int outputCols = inputCols - filterSize + 1;
+        int elementSize = precision == Precision.FLOAT ? Float.BYTES : Double.BYTES;
+
+        if (WinogradConvolutionEngine.supports(filterSize, stepSize)) {
+            return outputCols * elementSize < NARROW_ROW_BYTES ? WINOGRAD : DIRECT;
+        }
+
+        double direct = (double) filterSize * filterSize * outputRows * outputCols;
+        double cells = (double) FftConvolutionEngine.gridSize(inputRows) * FftConvolutionEngine.gridSize(inputCols);
+        double fft = FFT_COST * cells * (Math.log(cells) / Math.log(2));
+
+        return fft < direct ? FFT : DIRECT;
+    }
+
+    private static final int NARROW_ROW_BYTES = 128;
+    private static final double FFT_COST = 4.0;
+}
@@ -0,0 +1,19 @@
+package Layer;
+
+import data.Tensor;
+
+public interface ConvolutionEngine {
+
+    // input is batch x channels x rows x cols, filters is 1 x numFilters x size x size and output channel
+    // c * numFilters + f holds input channel c convolved with filter f. Engines are shared by layer replicas
+    // across threads, so they keep no per-call state; scratch space comes from the caller, sized by
+    // workspaceSize, in the same precision as the input. An engine may memoize a layout that is a pure function
+    // of the call's shapes and workspace offset, to avoid an allocation per call, if the layout is immutable
+    // (final fields only) and held in a volatile field: a thread then reads either a layout equal to the one it
+    // would build itself or one that does not match its arguments, which it replaces.
+    void forward(Tensor input, Tensor filters, int stepSize, Tensor output, Tensor workspace);
+
+    void accumulateFilterGradients(Tensor input, Tensor dLdO, int filterSize, int stepSize, Tensor filterGradients, Tensor workspace);
+
+    int workspaceSize(int filterSize, int outputRows, int outputCols);
+}
@@ -1,17 +1,19 @@
 package Layer;
 
-import java.util.ArrayList;
+import data.Kernels;
+import data.Precision;
+import data.Tensor;
+
 import java.util.List;
 import java.util.Random;
 
-import static data.MatrixUtility.add;
-import static data.MatrixUtility.multiply;
-
 public class ConvolutionLayer extends Layer {
 
     private long seed;
 
-    private List<double[][]> filters;
+    private Tensor filters;
+    private Tensor filterGradients;
+    private int numFilters;
     private int filterSize;
     private int stepSize;
 
@@ -19,80 +21,122 @@ public class ConvolutionLayer extends Layer {
     private int inputRows;
     private int inputCols;
     private double learningRate;
-
-    private List<double[][]> lastInput;
+    private Optimizer.State optimizerState;
+    // The layer whose parameter arrays this one uses; replicas go through it for the optimizer state, so
+    // setOptimizer on any of them reaches all of them.
+    private final ConvolutionLayer owner;
+    private ConvolutionAlgorithm algorithm;
+    private ConvolutionEngine engine;
+    private Precision precision;
+    private Tensor workspace;
+
+    private Tensor lastInput;
+    private Tensor output;
+    private Tensor inputError;
 
     public ConvolutionLayer(int filterSize, int stepSize, int inputLength, int inputRows, int inputCols, long seed, int numFilters, double learningRate) {
+        this(filterSize, stepSize, inputLength, inputRows, inputCols, seed, numFilters, learningRate, ConvolutionAlgorithm.DIRECT);
+    }
+
+    public ConvolutionLayer(int filterSize, int stepSize, int inputLength, int inputRows, int inputCols, long seed, int numFilters, double learningRate, ConvolutionAlgorithm algorithm) {
+        this(filterSize, stepSize, inputLength, inputRows, inputCols, seed, numFilters, learningRate, algorithm, Precision.DOUBLE);
+    }
+
+    public ConvolutionLayer(int filterSize, int stepSize, int inputLength, int inputRows, int inputCols, long seed, int numFilters, double learningRate, ConvolutionAlgorithm algorithm, Precision precision) {
+        this(filterSize, stepSize, inputLength, inputRows, inputCols, seed, numFilters, learningRate, algorithm, precision, null);
+    }
+
+    // Uses the given (1, numFilters, filterSize, filterSize) filters instead of drawing them from Random(seed).
+    public ConvolutionLayer(int filterSize, int stepSize, int inputLength, int inputRows, int inputCols, long seed, int numFilters, double learningRate, ConvolutionAlgorithm algorithm, Precision precision, Tensor filters) {
         this.filterSize = filterSize;
         this.stepSize = stepSize;
         this.inputLength = inputLength;
         this.inputRows = inputRows;
         this.inputCols = inputCols;
         this.seed = seed;
+        this.numFilters = numFilters;
         this.learningRate = learningRate;
+        this.algorithm = algorithm == ConvolutionAlgorithm.AUTO
+                ? ConvolutionAlgorithm.select(filterSize, stepSize, inputRows, inputCols, precision) : algorithm;
+        this.engine = this.algorithm.createEngine();
+        this.precision = precision;
+        this.workspace = new Tensor(precision, 1, 1, 1, Math.max(1, engine.workspaceSize(filterSize, getOutputRows(), getOutputCols())));
+
+        if (filters == null) {
+            generateRandomFilters(numFilters);
+        } else {
+            if (filters.getPrecision() != precision || !filters.hasShape(1, numFilters, filterSize, filterSize)) {
+                throw new IllegalArgumentException("Filters do not match " + numFilters + " " + precision + " filters of size " + filterSize);
+            }
+            this.filters = filters;
+            this.filterGradients = new Tensor(precision, 1, numFilters, filterSize, filterSize);
+        }
 
-        generateRandomFilters(numFilters);
+        this.optimizerState = new SgdOptimizer().newState(this.filters);
+        this.owner = this;
+    }
+
+    private ConvolutionLayer(ConvolutionLayer source) {
+        this.filterSize = source.filterSize;
+        this.stepSize = source.stepSize;
+        this.inputLength = source.inputLength;
+        this.inputRows = source.inputRows;
+        this.inputCols = source.inputCols;
+        this.seed = source.seed;
+        this.numFilters = source.numFilters;
+        this.learningRate = source.learningRate;
+        this.algorithm = source.algorithm;
+        this.engine = source.engine;
+        this.precision = source.precision;
+        this.workspace = new Tensor(precision, 1, 1, 1, source.workspace.size());
+        this.filters = source.filters;
+        this.filterGradients = new Tensor(precision, 1, numFilters, filterSize, filterSize);
+        this.owner = source.owner;
     }
 
     private void generateRandomFilters(int numFilters) {
-        filters = new ArrayList<>();
+        filters = new Tensor(precision, 1, numFilters, filterSize, filterSize);
+        filterGradients = new Tensor(precision, 1, numFilters, filterSize, filterSize);
         Random random = new Random(seed);
 
         for (int n = 0; n < numFilters; n++) {
-            double[][] newFilter = new double[filterSize][filterSize];
-
             for (int i = 0; i < filterSize; i++) {
                 for (int j = 0; j < filterSize; j++) {
                     double value = random.nextGaussian();
-                    newFilter[i][j] = value;
+                    filters.set(0, n, i, j, value);
                 }
             }
-
-            filters.add(newFilter);
         }
     }
 
     public List<double[][]> convolutionForwardPass(List<double[][]> input) {
+        return convolutionForwardPass(Tensor.fromMatrices(input).toPrecision(precision)).toMatrices();
+    }
+
+    public Tensor convolutionForwardPass(Tensor input) {
         lastInput = input;
-        List<double[][]> output = new ArrayList<>();
+        output = reuseOrAllocate(output, precision, input.getBatch(), numFilters * inputLength, getOutputRows(), getOutputCols());
 
-        for (double[][] singleInput : input) {
-            for (double[][] filter : filters) {
-                output.add(convolve(singleInput, filter, stepSize));
-            }
-        }
+        engine.forward(input, filters, stepSize, output, workspace);
 
         return output;
     }
 
-    private double[][] convolve(double[][] input, double[][] filter, int stepSize) {
-        int outRows = (input.length - filter.length) / stepSize + 1;
-        int outCols = (input[0].length - filter[0].length) / stepSize + 1;
-        int inRows = input.length;
-        int inCols = input[0].length;
-        int fRows = filter.length;
-        int fCols = filter[0].length;
-
-        double[][] output = new double[outRows][outCols];
-
-        for (int i = 0; i <= inRows - fRows; i += stepSize) {
-            for (int j = 0; j <= inCols - fCols; j += stepSize) {
-                double sum = 0.0;
-
-                for (int x = 0; x < fRows; x++) {
-                    for (int y = 0; y < fCols; y++) {
-                        int inputRowIndex = i + x;
-                        int inputColIndex = j + y;
-                        double value = filter[x][y] * input[inputRowIndex][inputColIndex];
-                        sum += value;
-                    }
-                }
+    @Override
+    public Tensor infer(Tensor input, InferenceContext context, int slot) {
+        Tensor result = context.output(slot, precision, input.getBatch(), numFilters * inputLength, getOutputRows(), getOutputCols());
+        inferInto(input, result, context.workspace(slot, precision, workspace.size()));
+        return result;
+    }
 
-                output[i / stepSize][j / stepSize] = sum;
-            }
-        }
+    @Override
+    public void inferInto(Tensor input, Tensor output, Tensor workspace) {
+        engine.forward(input, filters, stepSize, output, workspace);
+    }
 
-        return output;
+    @Override
+    public int getWorkspaceSize() {
+        return workspace.size();
     }
 
     public double[][] spaceArray(double[][] input) {
@@ -115,62 +159,124 @@ public class ConvolutionLayer extends Layer {
     }
 
     @Override
-    public double[] getOutput(List<double[][]> input) {
-        List<double[][]> output = convolutionForwardPass(input);
-        return getNextLayer().getOutput(output);
+    public Tensor forward(Tensor input) {
+        return convolutionForwardPass(input);
     }
 
     @Override
     public double[] getOutput(double[] input) {
-        List<double[][]> matrixInput = vectorToMatrix(input, inputLength, inputRows, inputCols);
-        return getOutput(matrixInput);
+        return getOutput(Tensor.wrap(input, inputLength, inputRows, inputCols).toPrecision(precision)).toArray();
     }
 
     @Override
     public void backPropagation(double[] dLdO) {
-        List<double[][]> matrixInput = vectorToMatrix(dLdO, inputLength, inputRows, inputCols);
-        backPropagation(matrixInput);
+        backPropagation(Tensor.wrap(dLdO, getOutputLength(), getOutputRows(), getOutputCols()).toPrecision(precision));
     }
 
     @Override
-    public void backPropagation(List<double[][]> dLdO) {
-        List<double[][]> filtersDelta = new ArrayList<>();
-        List<double[][]> dLdOPreviousLayer = new ArrayList<>();
-
-        for (int f = 0; f < filters.size(); f++) {
-            filtersDelta.add(new double[filterSize][filterSize]);
+    public Tensor backward(Tensor dLdO) {
+        Tensor dLdOPreviousLayer = inputError = reuseOrAllocate(inputError, precision, lastInput.getBatch(), inputLength, inputRows, inputCols);
+        dLdOPreviousLayer.fill(0);
+
+        engine.accumulateFilterGradients(lastInput, dLdO, filterSize, stepSize, filterGradients, workspace);
+
+        for (int b = 0; b < lastInput.getBatch(); b++) {
+            for (int i = 0; i < inputLength; i++) {
+                for (int f = 0; f < numFilters; f++) {
+                    int errorOffset = dLdO.index(b, i * numFilters + f, 0, 0);
+                    int filterOffset = filters.index(0, f, 0, 0);
+                    int inputErrorOffset = dLdOPreviousLayer.index(b, i, 0, 0);
+
+                    if (precision == Precision.FLOAT) {
+                        scatterError(dLdO.floatData(), errorOffset, filters.floatData(), filterOffset,
+                                dLdOPreviousLayer.floatData(), inputErrorOffset);
+                    } else {
+                        scatterError(dLdO.data(), errorOffset, filters.data(), filterOffset,
+                                dLdOPreviousLayer.data(), inputErrorOffset);
+                    }
+                }
+            }
         }
 
-        for (int i = 0; i < lastInput.size(); i++) {
-            double[][] errorForInput = new double[inputRows][inputCols];
-
-            for (int f = 0; f < filters.size(); f++) {
-                double[][] currFilter = filters.get(f);
-                double[][] error = dLdO.get(i * filters.size() + f);
-                double[][] spacedError = spaceArray(error);
-                double[][] dLdF = convolve(lastInput.get(i), spacedError, 1);
+        return dLdOPreviousLayer;
+    }
 
-                double[][] delta = multiply(dLdF, - learningRate);
-                double[][] newTotalDelta = add(filtersDelta.get(f), delta);
-                filtersDelta.set(f, newTotalDelta);
+    // dL/dX is the full convolution of the stride-spaced error with the flipped filter, written here
+    // directly as a scatter: each output error adds error * filter onto the window it was computed from.
+    private void scatterError(double[] error, int errorOffset, double[] filter, int filterOffset, double[] inputError, int inputErrorOffset) {
+        int outRows = getOutputRows();
+        int outCols = getOutputCols();
 
-                double[][] flippedError = flipArrayHorizontal(flipArrayVertical(spacedError));
-                errorForInput = add(errorForInput, fullConvolve(currFilter, flippedError));
+        if (stepSize == 1) {
+            for (int i = 0; i < outRows; i++) {
+                for (int x = 0; x < filterSize; x++) {
+                    for (int y = 0; y < filterSize; y++) {
+                        Kernels.INSTANCE.axpy(filter[filterOffset + x * filterSize + y], error, errorOffset + i * outCols,
+                                inputError, inputErrorOffset + (i + x) * inputCols + y, outCols);
+                    }
+                }
             }
+            return;
+        }
+
+        for (int i = 0; i < outRows; i++) {
+            for (int j = 0; j < outCols; j++) {
+                double value = error[errorOffset + i * outCols + j];
 
-            dLdOPreviousLayer.add(errorForInput);
+                for (int x = 0; x < filterSize; x++) {
+                    int inputRow = inputErrorOffset + (i * stepSize + x) * inputCols + j * stepSize;
+                    int filterRow = filterOffset + x * filterSize;
+
+                    for (int y = 0; y < filterSize; y++) {
+                        inputError[inputRow + y] += value * filter[filterRow + y];
+                    }
+                }
+            }
         }
+    }
 
-        for (int f = 0; f < filters.size(); f++) {
-            double[][] modified = add(filtersDelta.get(f), filters.get(f));
-            filters.set(f, modified);
+    private void scatterError(float[] error, int errorOffset, float[] filter, int filterOffset, float[] inputError, int inputErrorOffset) {
+        int outRows = getOutputRows();
+        int outCols = getOutputCols();
+
+        if (stepSize == 1) {
+            for (int i = 0; i < outRows; i++) {
+                for (int x = 0; x < filterSize; x++) {
+                    for (int y = 0; y < filterSize; y++) {
+                        Kernels.INSTANCE.axpy(filter[filterOffset + x * filterSize + y], error, errorOffset + i * outCols,
+                                inputError, inputErrorOffset + (i + x) * inputCols + y, outCols);
+                    }
+                }
+            }
+            return;
         }
 
-        if (getPreviousLayer() != null) {
-            getPreviousLayer().backPropagation(dLdOPreviousLayer);
+        for (int i = 0; i < outRows; i++) {
+            for (int j = 0; j < outCols; j++) {
+                float value = error[errorOffset + i * outCols + j];
+
+                for (int x = 0; x < filterSize; x++) {
+                    int inputRow = inputErrorOffset + (i * stepSize + x) * inputCols + j * stepSize;
+                    int filterRow = filterOffset + x * filterSize;
+
+                    for (int y = 0; y < filterSize; y++) {
+                        inputError[inputRow + y] += value * filter[filterRow + y];
+                    }
+                }
+            }
         }
     }
 
+    @Override
+    public void applyGradients(int batchSize, double learningRateScale) {
+        owner.optimizerState.apply(filters, filterGradients, learningRate * learningRateScale, batchSize);
+    }
+
+    @Override
+    public void setOptimizer(Optimizer optimizer) {
+        owner.optimizerState = optimizer.newState(filters);
+    }
+
     public double[][] flipArrayHorizontal(double[][] array) {
         int rows = array.length;
         int cols = array[0].length;
@@ -197,42 +303,63 @@ public class ConvolutionLayer extends Layer {
         return output;
     }
 
-    private double[][] fullConvolve(double[][] input, double[][] filter) {
-        int outRows = input.length + filter.length - 1;
-        int outCols = input[0].length + filter[0].length - 1;
-        int inRows = input.length;
-        int inCols = input[0].length;
-        int fRows = filter.length;
-        int fCols = filter[0].length;
+    @Override
+    public void reserve(int batchSize) {
+        output = reuseOrAllocate(output, precision, batchSize, numFilters * inputLength, getOutputRows(), getOutputCols());
+        inputError = reuseOrAllocate(inputError, precision, batchSize, inputLength, inputRows, inputCols);
+    }
 
-        double[][] output = new double[outRows][outCols];
+    @Override
+    public Layer replicate() {
+        return new ConvolutionLayer(this);
+    }
 
-        for (int i = -fRows + 1; i < inRows; i++) {
-            for (int j = -fCols + 1; j < inCols; j++) {
-                double sum = 0.0;
+    public Tensor getFilters() {
+        return filters;
+    }
 
-                for (int x = 0; x < fRows; x++) {
-                    for (int y = 0; y < fCols; y++) {
-                        int inputRowIndex = i + x;
-                        int inputColIndex = j + y;
+    public int getNumFilters() {
+        return numFilters;
+    }
 
-                        if (inputRowIndex >= 0 && inputColIndex >= 0 && inputRowIndex < inRows && inputColIndex < inCols) {
-                            double value = filter[x][y] * input[inputRowIndex][inputColIndex];
-                            sum += value;
-                        }
-                    }
-                }
+    public int getFilterSize() {
+        return filterSize;
+    }
 
-                output[i + fRows - 1][j + fCols - 1] = sum;
-            }
-        }
+    public int getStepSize() {
+        return stepSize;
+    }
 
-        return output;
+    public double getLearningRate() {
+        return learningRate;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public ConvolutionAlgorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    @Override
+    public Tensor getParameters() {
+        return filters;
+    }
+
+    @Override
+    public Tensor getGradients() {
+        return filterGradients;
+    }
+
+    @Override
+    public Precision getPrecision() {
+        return precision;
     }
 
     @Override
     public int getOutputLength() {
-        return filters.size() * inputLength;
+        return numFilters * inputLength;
     }
 
     @Override
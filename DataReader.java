@@ -2,47 +2,81 @@ package data;
 
 import java.io.BufferedReader;
 import java.io.FileReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.stream.Stream;
 
 public class DataReader {
 
     private final int rows = 28;
     private final int cols = 28;
 
+    // All pixels end up in one byte array shared by every returned image.
     public List<Image> readData(String path){
 
-        List<Image> images = new ArrayList<>();
+        int imageSize = rows * cols;
+        byte[] pixels = new byte[1024 * imageSize];
+        List<Integer> labels = new ArrayList<>();
 
         try (BufferedReader dataReader = new BufferedReader(new FileReader(path))){
 
             String line;
 
             while((line = dataReader.readLine()) != null){
-                String[] lineItems = line.split(",");
+                int offset = labels.size() * imageSize;
 
-                double[][] data = new double[rows][cols];
-                int label = Integer.parseInt(lineItems[0]);
-
-                int i = 1;
-
-                for(int row = 0; row < rows; row++){
-                    for(int col = 0; col < cols; col++){
-                        data[row][col] = (double) Integer.parseInt(lineItems[i]);
-                        i++;
-                    }
+                if (offset + imageSize > pixels.length) {
+                    pixels = Arrays.copyOf(pixels, pixels.length * 2);
                 }
 
-                images.add(new Image(data, label));
-
+                labels.add(parseLine(line, pixels, offset));
             }
 
         } catch (Exception e){
             throw new IllegalArgumentException("File not found " + path);
         }
 
+        List<Image> images = new ArrayList<>(labels.size());
+        ByteBuffer backing = ByteBuffer.wrap(pixels);
+
+        for (int n = 0; n < labels.size(); n++) {
+            images.add(new Image(backing.slice(n * imageSize, imageSize), rows, cols, labels.get(n)));
+        }
+
         return images;
 
     }
 
+    // Lazily parses one image per line as the stream is consumed; close the stream to release the file.
+    public Stream<Image> streamData(String path){
+
+        try {
+            return Files.lines(Path.of(path)).map(this::parseLine);
+        } catch (IOException e){
+            throw new IllegalArgumentException("File not found " + path, e);
+        }
+
+    }
+
+    private Image parseLine(String line){
+        byte[] pixels = new byte[rows * cols];
+        int label = parseLine(line, pixels, 0);
+        return new Image(ByteBuffer.wrap(pixels), rows, cols, label);
+    }
+
+    private int parseLine(String line, byte[] pixels, int offset){
+        String[] lineItems = line.split(",");
+
+        for(int i = 0; i < rows * cols; i++){
+            pixels[offset + i] = (byte) Integer.parseInt(lineItems[i + 1]);
+        }
+
+        return Integer.parseInt(lineItems[0]);
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,17 @@
+package data;
+
+import java.util.Iterator;
+import java.util.List;
+
+public interface Dataset {
+
+    // Starts a new pass over the data. Each returned iterator is one epoch and should be closed
+    // if it is abandoned before it is exhausted.
+    BatchIterator batches(int batchSize);
+
+    interface BatchIterator extends Iterator<List<Image>>, AutoCloseable {
+
+        @Override
+        void close();
+    }
+}
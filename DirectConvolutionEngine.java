@@ -0,0 +1,231 @@
+package Layer;
+
+import data.Kernels;
+import data.Tensor;
+
+import java.util.Arrays;
+
+public class DirectConvolutionEngine implements ConvolutionEngine {
+
+    @Override
+    public void forward(Tensor input, Tensor filters, int stepSize, Tensor output, Tensor workspace) {
+        int numFilters = filters.getChannels();
+        int filterSize = filters.getRows();
+
+        for (int b = 0; b < input.getBatch(); b++) {
+            for (int c = 0; c < input.getChannels(); c++) {
+                for (int f = 0; f < numFilters; f++) {
+                    int inOffset = input.index(b, c, 0, 0);
+                    int fOffset = filters.index(0, f, 0, 0);
+                    int outOffset = output.index(b, c * numFilters + f, 0, 0);
+
+                    if (input.isFloat()) {
+                        convolve(input.floatData(), inOffset, input.getRows(), input.getCols(),
+                                filters.floatData(), fOffset, filterSize, stepSize, output.floatData(), outOffset);
+                    } else {
+                        convolve(input.data(), inOffset, input.getRows(), input.getCols(),
+                                filters.data(), fOffset, filterSize, stepSize, output.data(), outOffset);
+                    }
+                }
+            }
+        }
+    }
+
+    private void convolve(double[] input, int inOffset, int inRows, int inCols,
+                          double[] filter, int fOffset, int filterSize, int stepSize,
+                          double[] output, int outOffset) {
+        int outCols = (inCols - filterSize) / stepSize + 1;
+
+        if (stepSize == 1) {
+            convolveRows(input, inOffset, inCols, filter, fOffset, filterSize, output, outOffset, inRows - filterSize + 1, outCols);
+            return;
+        }
+
+        for (int i = 0; i <= inRows - filterSize; i += stepSize) {
+            for (int j = 0; j <= inCols - filterSize; j += stepSize) {
+                double sum = 0.0;
+
+                for (int x = 0; x < filterSize; x++) {
+                    int inputRow = inOffset + (i + x) * inCols + j;
+                    int filterRow = fOffset + x * filterSize;
+
+                    for (int y = 0; y < filterSize; y++) {
+                        sum += filter[filterRow + y] * input[inputRow + y];
+                    }
+                }
+
+                output[outOffset + (i / stepSize) * outCols + j / stepSize] = sum;
+            }
+        }
+    }
+
+    private void convolve(float[] input, int inOffset, int inRows, int inCols,
+                          float[] filter, int fOffset, int filterSize, int stepSize,
+                          float[] output, int outOffset) {
+        int outCols = (inCols - filterSize) / stepSize + 1;
+
+        if (stepSize == 1) {
+            convolveRows(input, inOffset, inCols, filter, fOffset, filterSize, output, outOffset, inRows - filterSize + 1, outCols);
+            return;
+        }
+
+        for (int i = 0; i <= inRows - filterSize; i += stepSize) {
+            for (int j = 0; j <= inCols - filterSize; j += stepSize) {
+                float sum = 0f;
+
+                for (int x = 0; x < filterSize; x++) {
+                    int inputRow = inOffset + (i + x) * inCols + j;
+                    int filterRow = fOffset + x * filterSize;
+
+                    for (int y = 0; y < filterSize; y++) {
+                        sum += filter[filterRow + y] * input[inputRow + y];
+                    }
+                }
+
+                output[outOffset + (i / stepSize) * outCols + j / stepSize] = sum;
+            }
+        }
+    }
+
+    // Stride 1: each filter tap scales a whole input row segment into the output row, so the work is
+    // outCols-long axpys instead of filterSize-long dot products.
+    private void convolveRows(double[] input, int inOffset, int inCols, double[] filter, int fOffset, int filterSize,
+                              double[] output, int outOffset, int outRows, int outCols) {
+        Arrays.fill(output, outOffset, outOffset + outRows * outCols, 0);
+
+        for (int i = 0; i < outRows; i++) {
+            for (int x = 0; x < filterSize; x++) {
+                for (int y = 0; y < filterSize; y++) {
+                    Kernels.INSTANCE.axpy(filter[fOffset + x * filterSize + y], input, inOffset + (i + x) * inCols + y,
+                            output, outOffset + i * outCols, outCols);
+                }
+            }
+        }
+    }
+
+    private void convolveRows(float[] input, int inOffset, int inCols, float[] filter, int fOffset, int filterSize,
+                              float[] output, int outOffset, int outRows, int outCols) {
+        Arrays.fill(output, outOffset, outOffset + outRows * outCols, 0);
+
+        for (int i = 0; i < outRows; i++) {
+            for (int x = 0; x < filterSize; x++) {
+                for (int y = 0; y < filterSize; y++) {
+                    Kernels.INSTANCE.axpy(filter[fOffset + x * filterSize + y], input, inOffset + (i + x) * inCols + y,
+                            output, outOffset + i * outCols, outCols);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void accumulateFilterGradients(Tensor input, Tensor dLdO, int filterSize, int stepSize, Tensor filterGradients, Tensor workspace) {
+        int numFilters = dLdO.getChannels() / input.getChannels();
+        int filterElements = filterSize * filterSize;
+
+        for (int b = 0; b < input.getBatch(); b++) {
+            for (int c = 0; c < input.getChannels(); c++) {
+                int inOffset = input.index(b, c, 0, 0);
+
+                for (int f = 0; f < numFilters; f++) {
+                    int errorOffset = dLdO.index(b, c * numFilters + f, 0, 0);
+                    int gradientOffset = filterGradients.offset() + f * filterElements;
+
+                    if (input.isFloat()) {
+                        filterGradient(input.floatData(), inOffset, input.getCols(), dLdO.floatData(), errorOffset,
+                                dLdO.getRows(), dLdO.getCols(), filterSize, stepSize, filterGradients.floatData(), gradientOffset);
+                    } else {
+                        filterGradient(input.data(), inOffset, input.getCols(), dLdO.data(), errorOffset,
+                                dLdO.getRows(), dLdO.getCols(), filterSize, stepSize, filterGradients.data(), gradientOffset);
+                    }
+                }
+            }
+        }
+    }
+
+    private void filterGradient(double[] in, int inOffset, int inCols, double[] error, int errorOffset,
+                                int outRows, int outCols, int filterSize, int stepSize,
+                                double[] gradients, int gradientOffset) {
+        if (stepSize == 1) {
+            filterGradientRows(in, inOffset, inCols, error, errorOffset, outRows, outCols, filterSize, gradients, gradientOffset);
+            return;
+        }
+
+        for (int x = 0; x < filterSize; x++) {
+            for (int y = 0; y < filterSize; y++) {
+                double sum = 0.0;
+
+                for (int i = 0; i < outRows; i++) {
+                    int inputRow = inOffset + (i * stepSize + x) * inCols + y;
+                    int errorRow = errorOffset + i * outCols;
+
+                    for (int j = 0; j < outCols; j++) {
+                        sum += error[errorRow + j] * in[inputRow + j * stepSize];
+                    }
+                }
+
+                gradients[gradientOffset + x * filterSize + y] += sum;
+            }
+        }
+    }
+
+    private void filterGradient(float[] in, int inOffset, int inCols, float[] error, int errorOffset,
+                                int outRows, int outCols, int filterSize, int stepSize,
+                                float[] gradients, int gradientOffset) {
+        if (stepSize == 1) {
+            filterGradientRows(in, inOffset, inCols, error, errorOffset, outRows, outCols, filterSize, gradients, gradientOffset);
+            return;
+        }
+
+        for (int x = 0; x < filterSize; x++) {
+            for (int y = 0; y < filterSize; y++) {
+                float sum = 0f;
+
+                for (int i = 0; i < outRows; i++) {
+                    int inputRow = inOffset + (i * stepSize + x) * inCols + y;
+                    int errorRow = errorOffset + i * outCols;
+
+                    for (int j = 0; j < outCols; j++) {
+                        sum += error[errorRow + j] * in[inputRow + j * stepSize];
+                    }
+                }
+
+                gradients[gradientOffset + x * filterSize + y] += sum;
+            }
+        }
+    }
+
+    private void filterGradientRows(double[] in, int inOffset, int inCols, double[] error, int errorOffset,
+                                    int outRows, int outCols, int filterSize, double[] gradients, int gradientOffset) {
+        for (int x = 0; x < filterSize; x++) {
+            for (int y = 0; y < filterSize; y++) {
+                double sum = 0;
+
+                for (int i = 0; i < outRows; i++) {
+                    sum += Kernels.INSTANCE.dot(error, errorOffset + i * outCols, in, inOffset + (i + x) * inCols + y, outCols);
+                }
+
+                gradients[gradientOffset + x * filterSize + y] += sum;
+            }
+        }
+    }
+
+    private void filterGradientRows(float[] in, int inOffset, int inCols, float[] error, int errorOffset,
+                                    int outRows, int outCols, int filterSize, float[] gradients, int gradientOffset) {
+        for (int x = 0; x < filterSize; x++) {
+            for (int y = 0; y < filterSize; y++) {
+                float sum = 0;
+
+                for (int i = 0; i < outRows; i++) {
+                    sum += Kernels.INSTANCE.dot(error, errorOffset + i * outCols, in, inOffset + (i + x) * inCols + y, outCols);
+                }
+
+                gradients[gradientOffset + x * filterSize + y] += sum;
+            }
+        }
+    }
+
+    @Override
+    public int workspaceSize(int filterSize, int outputRows, int outputCols) {
+        return 0;
+    }
+}
@@ -0,0 +1,21 @@
+package network;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("cnn.Epoch")
+@Label("Training Epoch")
+@Category("CNN")
+class EpochEvent extends Event {
+
+    @Label("Epoch")
+    int epoch;
+
+    @Label("Images")
+    int images;
+
+    @Label("Images per Second")
+    double imagesPerSecond;
+}
@@ -0,0 +1,245 @@
+package network;
+
+import data.Image;
+import data.Tensor;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Per-image store for the output of a network's last frozen layer. The first memoryBytes of features are kept
+// on the heap; up to spillBytes more spill to a memory-mapped file that grows one segment at a time, and once
+// both are full new images are no longer cached. Entries are keyed by a copy of the image's pixels, so the same
+// picture hits whichever Image object carries it, as with IdxReader's views or a StreamingDataset. Sources that
+// produce new pixels every epoch, such as an AugmentedDataset, never hit and are refused by NeuralNetwork.
+// A cache serves one network and is not thread-safe.
+public class FeatureCache implements AutoCloseable {
+
+    private static final long SEGMENT_BYTES = 1L << 28;
+
+    private final long memoryBytes;
+    private final Path spillFile;
+    private final long spillBytes;
+    private final Map<Key, Integer> slots = new HashMap<>();
+    private final List<Object> memory = new ArrayList<>();
+    private final List<Buffer> segments = new ArrayList<>();
+
+    private FileChannel channel;
+    private boolean floatEntries;
+    private int entryLength;
+    private int entryBytes;
+    private int memorySlots;
+    private int maxSlots;
+    private int slotsPerSegment;
+
+    // Keeps entries on the heap only.
+    public FeatureCache(long memoryBytes) {
+        this(memoryBytes, null, 0);
+    }
+
+    public FeatureCache(long memoryBytes, Path spillFile, long spillBytes) {
+        if (memoryBytes < 0 || spillBytes < 0) {
+            throw new IllegalArgumentException("Memory and spill caps must not be negative: " + memoryBytes + ", " + spillBytes);
+        }
+        if (spillBytes > 0 && spillFile == null) {
+            throw new IllegalArgumentException("A spill cap needs a spill file");
+        }
+
+        this.memoryBytes = memoryBytes;
+        this.spillFile = spillFile;
+        this.spillBytes = spillBytes;
+    }
+
+    public int size() {
+        return slots.size();
+    }
+
+    public int getSpilledEntries() {
+        return Math.max(0, slots.size() - memorySlots);
+    }
+
+    // Copies the cached features of image into target starting at offset; returns false on a miss.
+    boolean read(Image image, Tensor target, int offset) {
+        Integer slot = slots.get(new Key(image));
+
+        if (slot == null) {
+            return false;
+        }
+
+        if (slot < memorySlots) {
+            Object entry = memory.get(slot);
+
+            if (target.isFloat()) {
+                System.arraycopy((float[]) entry, 0, target.floatData(), offset, entryLength);
+            } else {
+                System.arraycopy((double[]) entry, 0, target.data(), offset, entryLength);
+            }
+            return true;
+        }
+
+        Buffer segment = segmentAt(slot);
+
+        if (floatEntries) {
+            ((FloatBuffer) segment).get(spillPosition(slot), target.floatData(), offset, entryLength);
+        } else {
+            ((DoubleBuffer) segment).get(spillPosition(slot), target.data(), offset, entryLength);
+        }
+        return true;
+    }
+
+    // Stores length features of image, read from source starting at offset; returns false if the cache is full.
+    // Every entry must have the same length.
+    boolean write(Image image, Tensor source, int offset, int length) {
+        Key key = new Key(image);
+
+        if (slots.containsKey(key)) {
+            return true;
+        }
+
+        if (slots.isEmpty()) {
+            floatEntries = source.isFloat();
+            entryLength = length;
+            entryBytes = length * (source.isFloat() ? Float.BYTES : Double.BYTES);
+            memorySlots = (int) Math.min(Integer.MAX_VALUE, memoryBytes / entryBytes);
+            maxSlots = (int) Math.min(Integer.MAX_VALUE, memorySlots + spillBytes / entryBytes);
+            slotsPerSegment = (int) Math.max(1, Math.min(SEGMENT_BYTES, spillBytes) / entryBytes);
+        } else if (length != entryLength) {
+            throw new IllegalArgumentException("Feature length " + length + " does not match cached length " + entryLength);
+        }
+
+        int slot = slots.size();
+
+        if (slot >= maxSlots) {
+            return false;
+        }
+
+        if (slot < memorySlots) {
+            memory.add(source.isFloat()
+                    ? copyOfRange(source.floatData(), offset, length)
+                    : copyOfRange(source.data(), offset, length));
+        } else {
+            Buffer segment = segmentAt(slot);
+
+            if (floatEntries) {
+                ((FloatBuffer) segment).put(spillPosition(slot), source.floatData(), offset, length);
+            } else {
+                ((DoubleBuffer) segment).put(spillPosition(slot), source.data(), offset, length);
+            }
+        }
+
+        slots.put(key, slot);
+        return true;
+    }
+
+    private static float[] copyOfRange(float[] data, int offset, int length) {
+        float[] copy = new float[length];
+        System.arraycopy(data, offset, copy, 0, length);
+        return copy;
+    }
+
+    private static double[] copyOfRange(double[] data, int offset, int length) {
+        double[] copy = new double[length];
+        System.arraycopy(data, offset, copy, 0, length);
+        return copy;
+    }
+
+    // Element index of a spilled entry within its segment's typed view.
+    private int spillPosition(int slot) {
+        return (slot - memorySlots) % slotsPerSegment * entryLength;
+    }
+
+    private Buffer segmentAt(int slot) {
+        int index = (slot - memorySlots) / slotsPerSegment;
+
+        try {
+            if (channel == null) {
+                channel = FileChannel.open(spillFile, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            }
+
+            // The last segment only covers the slots left under the spill cap, so the file never exceeds it.
+            while (segments.size() <= index) {
+                long first = segments.size() * (long) slotsPerSegment;
+                long count = Math.min(slotsPerSegment, maxSlots - memorySlots - first);
+                ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, first * entryBytes, count * entryBytes)
+                        .order(ByteOrder.nativeOrder());
+                segments.add(floatEntries ? mapped.asFloatBuffer() : mapped.asDoubleBuffer());
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Could not map feature cache file " + spillFile, e);
+        }
+
+        return segments.get(index);
+    }
+
+    // Pixels and shape of an image, copied so that later changes to a reused pixel buffer cannot alter the key.
+    private static final class Key {
+
+        private final int rows;
+        private final int cols;
+        private final byte[] pixels;
+        private final int hash;
+
+        Key(Image image) {
+            rows = image.getRows();
+            cols = image.getCols();
+            pixels = new byte[rows * cols];
+
+            for (int k = 0; k < pixels.length; k++) {
+                pixels[k] = (byte) image.getPixel(k);
+            }
+
+            hash = 31 * (31 * rows + cols) + Arrays.hashCode(pixels);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+
+            Key key = (Key) other;
+            return hash == key.hash && rows == key.rows && cols == key.cols && Arrays.equals(pixels, key.pixels);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    // Drops every entry, e.g. after the frozen layers change. The spill file is kept and overwritten.
+    public void clear() {
+        slots.clear();
+        memory.clear();
+        segments.clear();
+    }
+
+    // Drops every entry and deletes the spill file; the mappings are released once they are garbage collected.
+    @Override
+    public void close() {
+        clear();
+
+        try {
+            if (channel != null) {
+                channel.close();
+                channel = null;
+                Files.deleteIfExists(spillFile);
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Could not delete feature cache file " + spillFile, e);
+        }
+    }
+}
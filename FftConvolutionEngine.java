@@ -0,0 +1,405 @@
+package Layer;
+
+import data.Kernels;
+import data.Tensor;
+
+import java.util.Arrays;
+
+// Convolution through the 2-D FFT. Each input plane is zero-padded to a power-of-two grid and transformed once;
+// filters are applied two at a time by packing them as the real and imaginary parts of one complex kernel,
+// whose inverse-transformed product with the input holds both correlations. The cost per filter no longer grows
+// with filterSize^2, so this pays off for large filters. Both passes of a 2-D transform run down columns, where
+// each butterfly is a whole-row Kernels call, with a transpose in between; the frequency domain is kept
+// transposed. The filter gradients are the same correlation with dLdO as the kernel. Strides other than 1 use
+// direct convolution.
+public class FftConvolutionEngine implements ConvolutionEngine {
+
+    private final DirectConvolutionEngine direct = new DirectConvolutionEngine();
+    // Layout of the last shape and workspace offset seen, memoized as ConvolutionEngine allows; the layout object
+    // itself is never modified.
+    private volatile Grid lastGrid;
+
+    @Override
+    public void forward(Tensor input, Tensor filters, int stepSize, Tensor output, Tensor workspace) {
+        if (stepSize != 1) {
+            direct.forward(input, filters, stepSize, output, workspace);
+            return;
+        }
+
+        int numFilters = filters.getChannels();
+        int filterSize = filters.getRows();
+        int outPlane = output.getRows() * output.getCols();
+        Grid grid = grid(input.getRows(), input.getCols(), workspace.offset());
+
+        if (input.isFloat()) {
+            grid.fillTwiddles(workspace.floatData());
+        } else {
+            grid.fillTwiddles(workspace.data());
+        }
+
+        for (int b = 0; b < input.getBatch(); b++) {
+            for (int c = 0; c < input.getChannels(); c++) {
+                int inOffset = input.index(b, c, 0, 0);
+                int outOffset = output.index(b, c * numFilters, 0, 0);
+
+                if (input.isFloat()) {
+                    transformInput(grid, input.floatData(), inOffset, workspace.floatData());
+                } else {
+                    transformInput(grid, input.data(), inOffset, workspace.data());
+                }
+
+                for (int f = 0; f < numFilters; f += 2) {
+                    int second = f + 1 < numFilters ? filters.index(0, f + 1, 0, 0) : -1;
+
+                    if (input.isFloat()) {
+                        correlatePair(grid, filters.floatData(), filters.index(0, f, 0, 0), second, filterSize, filterSize,
+                                output.floatData(), outOffset + f * outPlane, outOffset + (f + 1) * outPlane,
+                                output.getRows(), output.getCols(), false, workspace.floatData());
+                    } else {
+                        correlatePair(grid, filters.data(), filters.index(0, f, 0, 0), second, filterSize, filterSize,
+                                output.data(), outOffset + f * outPlane, outOffset + (f + 1) * outPlane,
+                                output.getRows(), output.getCols(), false, workspace.data());
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public void accumulateFilterGradients(Tensor input, Tensor dLdO, int filterSize, int stepSize, Tensor filterGradients, Tensor workspace) {
+        if (stepSize != 1) {
+            direct.accumulateFilterGradients(input, dLdO, filterSize, stepSize, filterGradients, workspace);
+            return;
+        }
+
+        int numFilters = dLdO.getChannels() / input.getChannels();
+        int errorPlane = dLdO.getRows() * dLdO.getCols();
+        int filterElements = filterSize * filterSize;
+        Grid grid = grid(input.getRows(), input.getCols(), workspace.offset());
+
+        if (input.isFloat()) {
+            grid.fillTwiddles(workspace.floatData());
+        } else {
+            grid.fillTwiddles(workspace.data());
+        }
+
+        for (int b = 0; b < input.getBatch(); b++) {
+            for (int c = 0; c < input.getChannels(); c++) {
+                int inOffset = input.index(b, c, 0, 0);
+                int errorOffset = dLdO.index(b, c * numFilters, 0, 0);
+
+                if (input.isFloat()) {
+                    transformInput(grid, input.floatData(), inOffset, workspace.floatData());
+                } else {
+                    transformInput(grid, input.data(), inOffset, workspace.data());
+                }
+
+                for (int f = 0; f < numFilters; f += 2) {
+                    int second = f + 1 < numFilters ? errorOffset + (f + 1) * errorPlane : -1;
+                    int gradientOffset = filterGradients.offset() + f * filterElements;
+
+                    if (input.isFloat()) {
+                        correlatePair(grid, dLdO.floatData(), errorOffset + f * errorPlane, second, dLdO.getRows(), dLdO.getCols(),
+                                filterGradients.floatData(), gradientOffset, gradientOffset + filterElements,
+                                filterSize, filterSize, true, workspace.floatData());
+                    } else {
+                        correlatePair(grid, dLdO.data(), errorOffset + f * errorPlane, second, dLdO.getRows(), dLdO.getCols(),
+                                filterGradients.data(), gradientOffset, gradientOffset + filterElements,
+                                filterSize, filterSize, true, workspace.data());
+                    }
+                }
+            }
+        }
+    }
+
+    private Grid grid(int inRows, int inCols, int base) {
+        Grid grid = lastGrid;
+        if (grid == null || grid.inRows != inRows || grid.inCols != inCols || grid.a != base) {
+            lastGrid = grid = new Grid(inRows, inCols, base);
+        }
+        return grid;
+    }
+
+    // X = FFT(input plane), kept in the x region.
+    private void transformInput(Grid grid, double[] in, int inOffset, double[] w) {
+        Arrays.fill(w, grid.a, grid.a + 2 * grid.cells, 0);
+
+        for (int i = 0; i < grid.inRows; i++) {
+            System.arraycopy(in, inOffset + i * grid.inCols, w, grid.a + i * grid.width, grid.inCols);
+        }
+
+        forwardTransform(grid, w, grid.x);
+    }
+
+    private void transformInput(Grid grid, float[] in, int inOffset, float[] w) {
+        Arrays.fill(w, grid.a, grid.a + 2 * grid.cells, 0);
+
+        for (int i = 0; i < grid.inRows; i++) {
+            System.arraycopy(in, inOffset + i * grid.inCols, w, grid.a + i * grid.width, grid.inCols);
+        }
+
+        forwardTransform(grid, w, grid.x);
+    }
+
+    // For kernels k1 and k2 (second < 0 means k2 = 0), out1[i][j] (+)= sum of in[i + x][j + y] * k1[x][y] and
+    // out2 likewise with k2. z = k1 + i k2 is loaded index-reversed, so its transform is Z(-u, -v) and
+    // IFFT(X . Z(-u, -v)) = corr(in, k1) + i corr(in, k2).
+    private void correlatePair(Grid grid, double[] kernel, int first, int second, int kernelRows, int kernelCols,
+                               double[] out, int out1, int out2, int outRows, int outCols, boolean accumulate, double[] w) {
+        int re = grid.a;
+        int im = grid.a + grid.cells;
+
+        Arrays.fill(w, grid.a, grid.a + 2 * grid.cells, 0);
+
+        for (int x = 0; x < kernelRows; x++) {
+            int row = ((grid.height - x) % grid.height) * grid.width;
+
+            for (int y = 0; y < kernelCols; y++) {
+                int cell = row + (grid.width - y) % grid.width;
+                w[re + cell] = kernel[first + x * kernelCols + y];
+                w[im + cell] = second < 0 ? 0 : kernel[second + x * kernelCols + y];
+            }
+        }
+
+        forwardTransform(grid, w, grid.k);
+        Kernels.INSTANCE.complexMultiply(w, grid.x, grid.x + grid.cells, w, grid.k, grid.k + grid.cells, grid.cells);
+        inverseTransform(grid, w, grid.k);
+
+        double norm = 1.0 / grid.cells;
+
+        for (int i = 0; i < outRows; i++) {
+            for (int j = 0; j < outCols; j++) {
+                int cell = i * grid.width + j;
+                int o = i * outCols + j;
+                out[out1 + o] = (accumulate ? out[out1 + o] : 0) + w[re + cell] * norm;
+
+                if (second >= 0) {
+                    out[out2 + o] = (accumulate ? out[out2 + o] : 0) + w[im + cell] * norm;
+                }
+            }
+        }
+    }
+
+    private void correlatePair(Grid grid, float[] kernel, int first, int second, int kernelRows, int kernelCols,
+                               float[] out, int out1, int out2, int outRows, int outCols, boolean accumulate, float[] w) {
+        int re = grid.a;
+        int im = grid.a + grid.cells;
+
+        Arrays.fill(w, grid.a, grid.a + 2 * grid.cells, 0);
+
+        for (int x = 0; x < kernelRows; x++) {
+            int row = ((grid.height - x) % grid.height) * grid.width;
+
+            for (int y = 0; y < kernelCols; y++) {
+                int cell = row + (grid.width - y) % grid.width;
+                w[re + cell] = kernel[first + x * kernelCols + y];
+                w[im + cell] = second < 0 ? 0 : kernel[second + x * kernelCols + y];
+            }
+        }
+
+        forwardTransform(grid, w, grid.k);
+        Kernels.INSTANCE.complexMultiply(w, grid.x, grid.x + grid.cells, w, grid.k, grid.k + grid.cells, grid.cells);
+        inverseTransform(grid, w, grid.k);
+
+        float norm = 1f / grid.cells;
+
+        for (int i = 0; i < outRows; i++) {
+            for (int j = 0; j < outCols; j++) {
+                int cell = i * grid.width + j;
+                int o = i * outCols + j;
+                out[out1 + o] = (accumulate ? out[out1 + o] : 0) + w[re + cell] * norm;
+
+                if (second >= 0) {
+                    out[out2 + o] = (accumulate ? out[out2 + o] : 0) + w[im + cell] * norm;
+                }
+            }
+        }
+    }
+
+    // Grid in a (height x width) to its transform in target, stored transposed (width x height).
+    private void forwardTransform(Grid grid, double[] w, int target) {
+        columns(grid, w, grid.a, grid.height, grid.width, false);
+        transpose(w, grid.a, target, grid.height, grid.width, grid.cells);
+        columns(grid, w, target, grid.width, grid.height, false);
+    }
+
+    private void forwardTransform(Grid grid, float[] w, int target) {
+        columns(grid, w, grid.a, grid.height, grid.width, false);
+        transpose(w, grid.a, target, grid.height, grid.width, grid.cells);
+        columns(grid, w, target, grid.width, grid.height, false);
+    }
+
+    // Transposed spectrum in source back to an unnormalized (height x width) grid in a.
+    private void inverseTransform(Grid grid, double[] w, int source) {
+        columns(grid, w, source, grid.width, grid.height, true);
+        transpose(w, source, grid.a, grid.width, grid.height, grid.cells);
+        columns(grid, w, grid.a, grid.height, grid.width, true);
+    }
+
+    private void inverseTransform(Grid grid, float[] w, int source) {
+        columns(grid, w, source, grid.width, grid.height, true);
+        transpose(w, source, grid.a, grid.width, grid.height, grid.cells);
+        columns(grid, w, grid.a, grid.height, grid.width, true);
+    }
+
+    // In-place radix-2 FFT down every column of a rows x cols complex grid (real part at base, imaginary part
+    // cells later). Each butterfly combines two whole rows.
+    private void columns(Grid grid, double[] w, int base, int rows, int cols, boolean inverse) {
+        int im = base + grid.cells;
+
+        for (int i = 1, j = 0; i < rows; i++) {
+            int bit = rows >> 1;
+            for (; (j & bit) != 0; bit >>= 1) {
+                j ^= bit;
+            }
+            j ^= bit;
+
+            if (i < j) {
+                swapRows(w, base + i * cols, base + j * cols, cols);
+                swapRows(w, im + i * cols, im + j * cols, cols);
+            }
+        }
+
+        for (int length = 2; length <= rows; length <<= 1) {
+            int half = length >> 1;
+            int step = grid.tableSize / length;
+
+            for (int k = 0; k < half; k++) {
+                double wr = w[grid.cos + k * step];
+                double wi = inverse ? w[grid.sin + k * step] : -w[grid.sin + k * step];
+
+                for (int start = 0; start < rows; start += length) {
+                    int a = (start + k) * cols;
+                    int b = a + half * cols;
+                    Kernels.INSTANCE.butterfly(w, base + a, im + a, base + b, im + b, wr, wi, cols);
+                }
+            }
+        }
+    }
+
+    private void columns(Grid grid, float[] w, int base, int rows, int cols, boolean inverse) {
+        int im = base + grid.cells;
+
+        for (int i = 1, j = 0; i < rows; i++) {
+            int bit = rows >> 1;
+            for (; (j & bit) != 0; bit >>= 1) {
+                j ^= bit;
+            }
+            j ^= bit;
+
+            if (i < j) {
+                swapRows(w, base + i * cols, base + j * cols, cols);
+                swapRows(w, im + i * cols, im + j * cols, cols);
+            }
+        }
+
+        for (int length = 2; length <= rows; length <<= 1) {
+            int half = length >> 1;
+            int step = grid.tableSize / length;
+
+            for (int k = 0; k < half; k++) {
+                float wr = w[grid.cos + k * step];
+                float wi = inverse ? w[grid.sin + k * step] : -w[grid.sin + k * step];
+
+                for (int start = 0; start < rows; start += length) {
+                    int a = (start + k) * cols;
+                    int b = a + half * cols;
+                    Kernels.INSTANCE.butterfly(w, base + a, im + a, base + b, im + b, wr, wi, cols);
+                }
+            }
+        }
+    }
+
+    private static void swapRows(double[] w, int a, int b, int length) {
+        for (int i = 0; i < length; i++) {
+            double value = w[a + i];
+            w[a + i] = w[b + i];
+            w[b + i] = value;
+        }
+    }
+
+    private static void swapRows(float[] w, int a, int b, int length) {
+        for (int i = 0; i < length; i++) {
+            float value = w[a + i];
+            w[a + i] = w[b + i];
+            w[b + i] = value;
+        }
+    }
+
+    // Transposes both the real and the imaginary rows x cols planes.
+    private static void transpose(double[] w, int source, int target, int rows, int cols, int cells) {
+        for (int part = 0; part < 2 * cells; part += cells) {
+            for (int i = 0; i < rows; i++) {
+                for (int j = 0; j < cols; j++) {
+                    w[target + part + j * rows + i] = w[source + part + i * cols + j];
+                }
+            }
+        }
+    }
+
+    private static void transpose(float[] w, int source, int target, int rows, int cols, int cells) {
+        for (int part = 0; part < 2 * cells; part += cells) {
+            for (int i = 0; i < rows; i++) {
+                for (int j = 0; j < cols; j++) {
+                    w[target + part + j * rows + i] = w[source + part + i * cols + j];
+                }
+            }
+        }
+    }
+
+    @Override
+    public int workspaceSize(int filterSize, int outputRows, int outputCols) {
+        return new Grid(outputRows + filterSize - 1, outputCols + filterSize - 1, 0).size;
+    }
+
+    static int gridSize(int length) {
+        return Integer.highestOneBit(Math.max(1, length - 1)) << 1;
+    }
+
+    // Power-of-two grid covering the input plane, and workspace offsets, each region holding a real and an
+    // imaginary plane: a (natural-order working grid), x (input spectrum), k (kernel spectrum and product),
+    // then a cos/sin table for the larger grid side.
+    private static final class Grid {
+        final int inRows;
+        final int inCols;
+        final int height;
+        final int width;
+        final int cells;
+        final int tableSize;
+        final int a;
+        final int x;
+        final int k;
+        final int cos;
+        final int sin;
+        final int size;
+
+        Grid(int inRows, int inCols, int base) {
+            this.inRows = inRows;
+            this.inCols = inCols;
+            this.height = gridSize(inRows);
+            this.width = gridSize(inCols);
+            this.cells = height * width;
+            this.tableSize = Math.max(height, width);
+            this.a = base;
+            this.x = a + 2 * cells;
+            this.k = x + 2 * cells;
+            this.cos = k + 2 * cells;
+            this.sin = cos + tableSize / 2;
+            this.size = sin + tableSize / 2 - base;
+        }
+
+        void fillTwiddles(double[] w) {
+            for (int i = 0; i < tableSize / 2; i++) {
+                w[cos + i] = Math.cos(2 * Math.PI * i / tableSize);
+                w[sin + i] = Math.sin(2 * Math.PI * i / tableSize);
+            }
+        }
+
+        void fillTwiddles(float[] w) {
+            for (int i = 0; i < tableSize / 2; i++) {
+                w[cos + i] = (float) Math.cos(2 * Math.PI * i / tableSize);
+                w[sin + i] = (float) Math.sin(2 * Math.PI * i / tableSize);
+            }
+        }
+    }
+}
@@ -1,142 +1,278 @@
 package Layer;
 
-import java.util.List;
+import data.Kernels;
+import data.Precision;
+import data.Tensor;
+
 import java.util.Random;
 
-public abstract class FullyConnectedLayer extends Layer {
+public class FullyConnectedLayer extends Layer {
 
     private long seed;
     private final double leak = 0.01;
 
-    private double[][] weights;
+    private Tensor weights;
+    private Tensor weightGradients;
     private int inputLength;
     private int outputLength;
     private double learningRate;
+    private Optimizer.State optimizerState;
+    // The layer whose parameter arrays this one uses; replicas go through it for the optimizer state, so
+    // setOptimizer on any of them reaches all of them.
+    private final FullyConnectedLayer owner;
+    private Precision precision;
 
-    private double[] lastZ;
-    private double[] lastA;
+    private Tensor lastInput;
+    private Tensor lastZ;
+    private Tensor lastA;
+    private Tensor inputError;
 
     public FullyConnectedLayer(int inputLength, int outputLength, long seed, double learningRate) {
+        this(inputLength, outputLength, seed, learningRate, Precision.DOUBLE);
+    }
+
+    public FullyConnectedLayer(int inputLength, int outputLength, long seed, double learningRate, Precision precision) {
+        this(inputLength, outputLength, seed, learningRate, precision, null);
+    }
+
+    // Uses the given (1, 1, outputLength, inputLength) weights instead of drawing them from Random(seed).
+    public FullyConnectedLayer(int inputLength, int outputLength, long seed, double learningRate, Precision precision, Tensor weights) {
         this.inputLength = inputLength;
         this.outputLength = outputLength;
         this.seed = seed;
         this.learningRate = learningRate;
+        this.precision = precision;
+
+        if (weights == null) {
+            generateRandomWeights();
+        } else {
+            if (weights.getPrecision() != precision || !weights.hasShape(1, 1, outputLength, inputLength)) {
+                throw new IllegalArgumentException("Weights do not match " + outputLength + "x" + inputLength + " " + precision);
+            }
+            this.weights = weights;
+            this.weightGradients = new Tensor(precision, 1, 1, outputLength, inputLength);
+        }
+
+        this.optimizerState = new SgdOptimizer().newState(this.weights);
+        this.owner = this;
+    }
 
-        generateRandomWeights();
+    private FullyConnectedLayer(FullyConnectedLayer source) {
+        this.inputLength = source.inputLength;
+        this.outputLength = source.outputLength;
+        this.seed = source.seed;
+        this.learningRate = source.learningRate;
+        this.precision = source.precision;
+        this.weights = source.weights;
+        this.weightGradients = new Tensor(precision, 1, 1, outputLength, inputLength);
+        this.owner = source.owner;
     }
 
+    // Weights are output-major: row j holds the inputLength weights feeding output j, so both the forward
+    // dot product and the backward updates stream contiguously through one row at a time.
     private void generateRandomWeights() {
         Random random = new Random(seed);
-        weights = new double[inputLength][outputLength];
+        weights = new Tensor(precision, 1, 1, outputLength, inputLength);
+        weightGradients = new Tensor(precision, 1, 1, outputLength, inputLength);
 
         for (int i = 0; i < inputLength; i++) {
             for (int j = 0; j < outputLength; j++) {
-                weights[i][j] = random.nextGaussian();
+                weights.set(0, 0, j, i, random.nextGaussian());
             }
         }
     }
 
     @Override
-    public double[] getOutput(List<double[][]> input) {
-        double[] flattenedInput = flatten(input);
-        lastZ = computeZ(flattenedInput);
-        lastA = activate(lastZ);
+    public Tensor forward(Tensor input) {
+        int batch = input.size() / inputLength;
+
+        lastInput = input;
+        reserve(batch);
+
+        forward(input, lastZ, lastA);
+
         return lastA;
     }
 
+    @Override
+    public Tensor infer(Tensor input, InferenceContext context, int slot) {
+        Tensor result = context.output(slot, precision, input.size() / inputLength, 1, 1, outputLength);
+        inferInto(input, result, null);
+        return result;
+    }
+
+    @Override
+    public void inferInto(Tensor input, Tensor output, Tensor workspace) {
+        forward(input, null, output);
+    }
+
     @Override
     public double[] getOutput(double[] input) {
-        lastZ = computeZ(input);
-        lastA = activate(lastZ);
-        return lastA;
+        return getOutput(Tensor.wrap(input, 1, 1, inputLength).toPrecision(precision)).toArray();
     }
 
-    private double[] computeZ(double[] input) {
-        double[] z = new double[outputLength];
+    // Matvec and LeakyReLU in one pass; z is kept only when training needs it for the backward pass.
+    private void forward(Tensor input, Tensor z, Tensor a) {
+        int batch = input.size() / inputLength;
 
+        if (precision == Precision.FLOAT) {
+            forward(input.floatData(), input.offset(), weights.floatData(),
+                    z == null ? null : z.floatData(), z == null ? 0 : z.offset(), a.floatData(), a.offset(), batch);
+        } else {
+            forward(input.data(), input.offset(), weights.data(),
+                    z == null ? null : z.data(), z == null ? 0 : z.offset(), a.data(), a.offset(), batch);
+        }
+    }
+
+    private void forward(double[] in, int inOffset, double[] w, double[] z, int zOffset, double[] a, int aOffset, int batch) {
         for (int j = 0; j < outputLength; j++) {
-            double sum = 0.0;
+            int weightRow = j * inputLength;
 
-            for (int i = 0; i < inputLength; i++) {
-                sum += weights[i][j] * input[i];
-            }
+            for (int b = 0; b < batch; b++) {
+                double value = Kernels.INSTANCE.dot(w, weightRow, in, inOffset + b * inputLength, inputLength);
 
-            z[j] = sum;
+                if (z != null) {
+                    z[zOffset + b * outputLength + j] = value;
+                }
+                a[aOffset + b * outputLength + j] = Math.max(leak * value, value);
+            }
         }
-
-        return z;
     }
 
-    private double[] activate(double[] z) {
-        double[] a = new double[z.length];
+    private void forward(float[] in, int inOffset, float[] w, float[] z, int zOffset, float[] a, int aOffset, int batch) {
+        float leak = (float) this.leak;
 
-        for (int i = 0; i < z.length; i++) {
-            a[i] = Math.max(leak * z[i], z[i]);
-        }
+        for (int j = 0; j < outputLength; j++) {
+            int weightRow = j * inputLength;
+
+            for (int b = 0; b < batch; b++) {
+                float value = Kernels.INSTANCE.dot(w, weightRow, in, inOffset + b * inputLength, inputLength);
 
-        return a;
+                if (z != null) {
+                    z[zOffset + b * outputLength + j] = value;
+                }
+                a[aOffset + b * outputLength + j] = Math.max(leak * value, value);
+            }
+        }
     }
 
     @Override
     public void backPropagation(double[] dLdO) {
-        double[] dLdZ = new double[dLdO.length];
+        backPropagation(Tensor.wrap(dLdO, 1, 1, outputLength).toPrecision(precision));
+    }
 
-        for (int i = 0; i < dLdO.length; i++) {
-            dLdZ[i] = dLdO[i] * (lastZ[i] > 0 ? 1 : leak);
+    @Override
+    public Tensor backward(Tensor dLdO) {
+        int batch = lastZ.getBatch();
+        Tensor dLdI = inputError;
+        dLdI.fill(0);
+
+        if (precision == Precision.FLOAT) {
+            backward(lastInput.floatData(), lastInput.offset(), dLdO.floatData(), dLdO.offset(), lastZ.floatData(),
+                    weights.floatData(), weightGradients.floatData(), dLdI.floatData(), batch);
+        } else {
+            backward(lastInput.data(), lastInput.offset(), dLdO.data(), dLdO.offset(), lastZ.data(),
+                    weights.data(), weightGradients.data(), dLdI.data(), batch);
         }
 
-        double[][] dLdW = new double[inputLength][outputLength];
+        return dLdI;
+    }
 
-        for (int i = 0; i < inputLength; i++) {
-            for (int j = 0; j < outputLength; j++) {
-                dLdW[i][j] = dLdZ[j] * lastA[i];
+    // One pass per weight row: the activation derivative, the dL/dW row update and the dL/dI contribution
+    // of that row are computed together, so each weight row is read once per batch.
+    private void backward(double[] in, int inOffset, double[] dLdO, int dLdOOffset, double[] z,
+                          double[] w, double[] dLdW, double[] dLdI, int batch) {
+        for (int j = 0; j < outputLength; j++) {
+            int weightRow = j * inputLength;
+
+            for (int b = 0; b < batch; b++) {
+                int k = b * outputLength + j;
+                double dLdZ = dLdO[dLdOOffset + k] * (z[k] > 0 ? 1 : leak);
+
+                Kernels.INSTANCE.axpy(dLdZ, in, inOffset + b * inputLength, dLdW, weightRow, inputLength);
+                Kernels.INSTANCE.axpy(dLdZ, w, weightRow, dLdI, b * inputLength, inputLength);
             }
         }
+    }
 
-        double[] dLdI = new double[inputLength];
-
-        for (int i = 0; i < inputLength; i++) {
-            double sum = 0.0;
+    private void backward(float[] in, int inOffset, float[] dLdO, int dLdOOffset, float[] z,
+                          float[] w, float[] dLdW, float[] dLdI, int batch) {
+        float leak = (float) this.leak;
 
-            for (int j = 0; j < outputLength; j++) {
-                sum += dLdZ[j] * weights[i][j];
-            }
+        for (int j = 0; j < outputLength; j++) {
+            int weightRow = j * inputLength;
 
-            dLdI[i] = sum;
-        }
+            for (int b = 0; b < batch; b++) {
+                int k = b * outputLength + j;
+                float dLdZ = dLdO[dLdOOffset + k] * (z[k] > 0 ? 1 : leak);
 
-        for (int i = 0; i < inputLength; i++) {
-            for (int j = 0; j < outputLength; j++) {
-                weights[i][j] -= learningRate * dLdW[i][j];
+                Kernels.INSTANCE.axpy(dLdZ, in, inOffset + b * inputLength, dLdW, weightRow, inputLength);
+                Kernels.INSTANCE.axpy(dLdZ, w, weightRow, dLdI, b * inputLength, inputLength);
             }
         }
+    }
 
-        if (getPreviousLayer() != null) {
-            getPreviousLayer().backPropagation(dLdI);
-        }
+    @Override
+    public void applyGradients(int batchSize, double learningRateScale) {
+        owner.optimizerState.apply(weights, weightGradients, learningRate * learningRateScale, batchSize);
     }
 
+    @Override
+    public void setOptimizer(Optimizer optimizer) {
+        owner.optimizerState = optimizer.newState(weights);
+    }
 
+    // dL/dI is laid out in the previous layer's output shape so it can be handed back without a reshape.
+    @Override
+    public void reserve(int batchSize) {
+        Layer previous = getPreviousLayer();
+
+        lastZ = reuseOrAllocate(lastZ, precision, batchSize, 1, 1, outputLength);
+        lastA = reuseOrAllocate(lastA, precision, batchSize, 1, 1, outputLength);
+        inputError = previous == null
+                ? reuseOrAllocate(inputError, precision, batchSize, 1, 1, inputLength)
+                : reuseOrAllocate(inputError, precision, batchSize, previous.getOutputLength(), previous.getOutputRows(), previous.getOutputCols());
+    }
 
-    private double[] flatten(List<double[][]> input) {
-        int totalElements = input.size() * input.get(0).length * input.get(0)[0].length;
-        double[] flattened = new double[totalElements];
-        int index = 0;
+    @Override
+    public Layer replicate() {
+        return new FullyConnectedLayer(this);
+    }
 
-        for (double[][] matrix : input) {
-            for (int i = 0; i < matrix.length; i++) {
-                for (int j = 0; j < matrix[0].length; j++) {
-                    flattened[index++] = matrix[i][j];
-                }
-            }
-        }
+    public Tensor getWeights() {
+        return weights;
+    }
+
+    public double getLeak() {
+        return leak;
+    }
+
+    public double getLearningRate() {
+        return learningRate;
+    }
 
-        return flattened;
+    public long getSeed() {
+        return seed;
+    }
+
+    @Override
+    public Tensor getParameters() {
+        return weights;
+    }
+
+    @Override
+    public Tensor getGradients() {
+        return weightGradients;
+    }
+
+    @Override
+    public Precision getPrecision() {
+        return precision;
     }
 
     @Override
     public int getOutputLength() {
-        return outputLength;
+        return 1;
     }
 
     @Override
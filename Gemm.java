@@ -0,0 +1,209 @@
+package data;
+
+import java.util.Arrays;
+
+public class Gemm {
+
+    private static final int BLOCK_K = 128;
+    private static final int BLOCK_N = 512;
+
+    // C (m x n) = A (m x k) * B (k x n), all row-major. Four rows of C are updated per pass so each
+    // loaded element of B is reused from a register, and B is tiled so a k x n block stays in cache.
+    public static void multiply(double[] a, int aOffset, double[] b, int bOffset, double[] c, int cOffset, int m, int n, int k) {
+        for (int i = 0; i < m; i++) {
+            Arrays.fill(c, cOffset + i * n, cOffset + (i + 1) * n, 0);
+        }
+
+        for (int kk = 0; kk < k; kk += BLOCK_K) {
+            int kEnd = Math.min(kk + BLOCK_K, k);
+
+            for (int jj = 0; jj < n; jj += BLOCK_N) {
+                int jEnd = Math.min(jj + BLOCK_N, n);
+                int i = 0;
+
+                for (; i + 3 < m; i += 4) {
+                    int c0 = cOffset + i * n;
+                    int c1 = c0 + n;
+                    int c2 = c1 + n;
+                    int c3 = c2 + n;
+
+                    for (int p = kk; p < kEnd; p++) {
+                        double a0 = a[aOffset + i * k + p];
+                        double a1 = a[aOffset + (i + 1) * k + p];
+                        double a2 = a[aOffset + (i + 2) * k + p];
+                        double a3 = a[aOffset + (i + 3) * k + p];
+                        int bRow = bOffset + p * n;
+
+                        for (int j = jj; j < jEnd; j++) {
+                            double value = b[bRow + j];
+                            c[c0 + j] += a0 * value;
+                            c[c1 + j] += a1 * value;
+                            c[c2 + j] += a2 * value;
+                            c[c3 + j] += a3 * value;
+                        }
+                    }
+                }
+
+                for (; i < m; i++) {
+                    int cRow = cOffset + i * n;
+
+                    for (int p = kk; p < kEnd; p++) {
+                        double value = a[aOffset + i * k + p];
+                        int bRow = bOffset + p * n;
+
+                        for (int j = jj; j < jEnd; j++) {
+                            c[cRow + j] += value * b[bRow + j];
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    // C (m x n) += A (m x k) * B^T where B is stored row-major as n x k.
+    public static void multiplyTransposedB(double[] a, int aOffset, double[] b, int bOffset, double[] c, int cOffset, int m, int n, int k) {
+        int i = 0;
+
+        for (; i + 3 < m; i += 4) {
+            int a0 = aOffset + i * k;
+            int a1 = a0 + k;
+            int a2 = a1 + k;
+            int a3 = a2 + k;
+
+            for (int j = 0; j < n; j++) {
+                int bRow = bOffset + j * k;
+                double s0 = 0.0;
+                double s1 = 0.0;
+                double s2 = 0.0;
+                double s3 = 0.0;
+
+                for (int p = 0; p < k; p++) {
+                    double value = b[bRow + p];
+                    s0 += a[a0 + p] * value;
+                    s1 += a[a1 + p] * value;
+                    s2 += a[a2 + p] * value;
+                    s3 += a[a3 + p] * value;
+                }
+
+                c[cOffset + i * n + j] += s0;
+                c[cOffset + (i + 1) * n + j] += s1;
+                c[cOffset + (i + 2) * n + j] += s2;
+                c[cOffset + (i + 3) * n + j] += s3;
+            }
+        }
+
+        for (; i < m; i++) {
+            int aRow = aOffset + i * k;
+
+            for (int j = 0; j < n; j++) {
+                int bRow = bOffset + j * k;
+                double sum = 0.0;
+
+                for (int p = 0; p < k; p++) {
+                    sum += a[aRow + p] * b[bRow + p];
+                }
+
+                c[cOffset + i * n + j] += sum;
+            }
+        }
+    }
+
+    // Single-precision versions of the kernels above.
+    public static void multiply(float[] a, int aOffset, float[] b, int bOffset, float[] c, int cOffset, int m, int n, int k) {
+        for (int i = 0; i < m; i++) {
+            Arrays.fill(c, cOffset + i * n, cOffset + (i + 1) * n, 0);
+        }
+
+        for (int kk = 0; kk < k; kk += BLOCK_K) {
+            int kEnd = Math.min(kk + BLOCK_K, k);
+
+            for (int jj = 0; jj < n; jj += BLOCK_N) {
+                int jEnd = Math.min(jj + BLOCK_N, n);
+                int i = 0;
+
+                for (; i + 3 < m; i += 4) {
+                    int c0 = cOffset + i * n;
+                    int c1 = c0 + n;
+                    int c2 = c1 + n;
+                    int c3 = c2 + n;
+
+                    for (int p = kk; p < kEnd; p++) {
+                        float a0 = a[aOffset + i * k + p];
+                        float a1 = a[aOffset + (i + 1) * k + p];
+                        float a2 = a[aOffset + (i + 2) * k + p];
+                        float a3 = a[aOffset + (i + 3) * k + p];
+                        int bRow = bOffset + p * n;
+
+                        for (int j = jj; j < jEnd; j++) {
+                            float value = b[bRow + j];
+                            c[c0 + j] += a0 * value;
+                            c[c1 + j] += a1 * value;
+                            c[c2 + j] += a2 * value;
+                            c[c3 + j] += a3 * value;
+                        }
+                    }
+                }
+
+                for (; i < m; i++) {
+                    int cRow = cOffset + i * n;
+
+                    for (int p = kk; p < kEnd; p++) {
+                        float value = a[aOffset + i * k + p];
+                        int bRow = bOffset + p * n;
+
+                        for (int j = jj; j < jEnd; j++) {
+                            c[cRow + j] += value * b[bRow + j];
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    public static void multiplyTransposedB(float[] a, int aOffset, float[] b, int bOffset, float[] c, int cOffset, int m, int n, int k) {
+        int i = 0;
+
+        for (; i + 3 < m; i += 4) {
+            int a0 = aOffset + i * k;
+            int a1 = a0 + k;
+            int a2 = a1 + k;
+            int a3 = a2 + k;
+
+            for (int j = 0; j < n; j++) {
+                int bRow = bOffset + j * k;
+                float s0 = 0f;
+                float s1 = 0f;
+                float s2 = 0f;
+                float s3 = 0f;
+
+                for (int p = 0; p < k; p++) {
+                    float value = b[bRow + p];
+                    s0 += a[a0 + p] * value;
+                    s1 += a[a1 + p] * value;
+                    s2 += a[a2 + p] * value;
+                    s3 += a[a3 + p] * value;
+                }
+
+                c[cOffset + i * n + j] += s0;
+                c[cOffset + (i + 1) * n + j] += s1;
+                c[cOffset + (i + 2) * n + j] += s2;
+                c[cOffset + (i + 3) * n + j] += s3;
+            }
+        }
+
+        for (; i < m; i++) {
+            int aRow = aOffset + i * k;
+
+            for (int j = 0; j < n; j++) {
+                int bRow = bOffset + j * k;
+                float sum = 0f;
+
+                for (int p = 0; p < k; p++) {
+                    sum += a[aRow + p] * b[bRow + p];
+                }
+
+                c[cOffset + i * n + j] += sum;
+            }
+        }
+    }
+}
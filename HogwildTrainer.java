@@ -0,0 +1,134 @@
+package network;
+
+import data.Dataset;
+import data.Image;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+// Asynchronous lock-free SGD (Hogwild): every thread trains its own replica on batches it claims from a shared
+// cursor and applies its update straight to the shared parameter arrays, with no reduction and no barrier
+// between batches. Updates from different threads may overwrite each other; at small batch sizes the lost
+// updates are rare enough that convergence follows the sequential trainer. Optimizer state is shared too, so
+// momentum and Adam moments are updated racily as well; plain SGD is the intended optimizer.
+public class HogwildTrainer implements AutoCloseable {
+
+    private final List<NeuralNetwork> replicas;
+    private final ExecutorService executor;
+
+    public HogwildTrainer(NeuralNetwork network, int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Thread count must be positive: " + threads);
+        }
+
+        this.replicas = new ArrayList<>();
+        this.replicas.add(network);
+
+        for (int i = 1; i < threads; i++) {
+            replicas.add(network.replicate());
+        }
+
+        this.executor = Executors.newFixedThreadPool(threads);
+    }
+
+    public void conductTraining(List<Image> images, int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+
+        AtomicInteger cursor = new AtomicInteger();
+        List<Callable<Void>> tasks = new ArrayList<>();
+
+        for (NeuralNetwork replica : replicas) {
+            tasks.add(() -> {
+                for (int start = cursor.getAndAdd(batchSize); start < images.size(); start = cursor.getAndAdd(batchSize)) {
+                    List<Image> batch = images.subList(start, Math.min(start + batchSize, images.size()));
+
+                    replica.accumulateGradients(batch);
+                    replica.applyGradients(batch.size());
+                }
+                return null;
+            });
+        }
+
+        invokeAll(tasks);
+    }
+
+    // The dataset's iterator is not thread-safe, so batches are handed out under its lock; training itself
+    // runs unsynchronized.
+    public void conductTraining(Dataset dataset, int batchSize) {
+        try (Dataset.BatchIterator batches = dataset.batches(batchSize)) {
+            List<Callable<Void>> tasks = new ArrayList<>();
+
+            for (NeuralNetwork replica : replicas) {
+                tasks.add(() -> {
+                    for (List<Image> batch = next(batches); batch != null; batch = next(batches)) {
+                        replica.accumulateGradients(batch);
+                        replica.applyGradients(batch.size());
+                    }
+                    return null;
+                });
+            }
+
+            invokeAll(tasks);
+        }
+    }
+
+    private static List<Image> next(Dataset.BatchIterator batches) {
+        synchronized (batches) {
+            return batches.hasNext() ? batches.next() : null;
+        }
+    }
+
+    // Trains two networks from the same factory for the given epochs, one sequentially and one with this
+    // trainer's strategy on the given thread count, and reports test accuracy and wall time after each epoch.
+    public static String compare(Supplier<NeuralNetwork> factory, List<Image> training, List<Image> test,
+                                 int epochs, int batchSize, int threads) {
+        NeuralNetwork sequential = factory.get();
+        NeuralNetwork asynchronous = factory.get();
+        StringBuilder report = new StringBuilder();
+
+        try (HogwildTrainer trainer = new HogwildTrainer(asynchronous, threads)) {
+            for (int epoch = 0; epoch < epochs; epoch++) {
+                long start = System.nanoTime();
+                sequential.conductTraining(training, batchSize);
+                long sequentialNanos = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                trainer.conductTraining(training, batchSize);
+                long asynchronousNanos = System.nanoTime() - start;
+
+                report.append(String.format("epoch %d: sequential %.4f (%.2f s), hogwild x%d %.4f (%.2f s)%n",
+                        epoch, sequential.assessAccuracy(test), sequentialNanos / 1e9,
+                        threads, asynchronous.assessAccuracy(test), asynchronousNanos / 1e9));
+            }
+        }
+
+        return report.toString();
+    }
+
+    private void invokeAll(List<Callable<Void>> tasks) {
+        try {
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Training interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Training worker failed", e.getCause());
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,64 @@
+package data;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.List;
+
+public class IdxReader {
+
+    static final int IMAGES_MAGIC = 0x00000803;
+    static final int LABELS_MAGIC = 0x00000801;
+
+    // Maps the MNIST image and label files and returns images that are views into the mapping.
+    // Nothing is parsed or copied until a pixel is read.
+    public List<Image> readData(String imagesPath, String labelsPath) {
+        MappedByteBuffer images = map(imagesPath);
+        MappedByteBuffer labels = map(labelsPath);
+
+        if (images.getInt(0) != IMAGES_MAGIC) {
+            throw new IllegalArgumentException("Not an IDX image file " + imagesPath);
+        }
+        if (labels.getInt(0) != LABELS_MAGIC) {
+            throw new IllegalArgumentException("Not an IDX label file " + labelsPath);
+        }
+
+        int count = images.getInt(4);
+        int rows = images.getInt(8);
+        int cols = images.getInt(12);
+
+        if (labels.getInt(4) != count) {
+            throw new IllegalArgumentException("Image and label counts differ: " + count + " vs " + labels.getInt(4));
+        }
+
+        int imageSize = rows * cols;
+
+        return new AbstractList<Image>() {
+            @Override
+            public Image get(int index) {
+                ByteBuffer pixels = images.slice(16 + index * imageSize, imageSize);
+                return new Image(pixels, rows, cols, labels.get(8 + index) & 0xFF);
+            }
+
+            @Override
+            public int size() {
+                return count;
+            }
+        };
+    }
+
+    private MappedByteBuffer map(String path) {
+        try (FileChannel channel = FileChannel.open(Path.of(path), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.BIG_ENDIAN);
+            return buffer;
+        } catch (IOException e) {
+            throw new IllegalArgumentException("File not found " + path, e);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package data;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+public class IdxWriter {
+
+    private final int rows = 28;
+    private final int cols = 28;
+
+    // One-time conversion of the label,pixel... CSV layout into IDX image and label files.
+    public int convertCsv(String csvPath, String imagesPath, String labelsPath) {
+        int count = 0;
+
+        try (BufferedReader csv = new BufferedReader(new FileReader(csvPath));
+             DataOutputStream images = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(imagesPath)));
+             DataOutputStream labels = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(labelsPath)))) {
+
+            images.writeInt(IdxReader.IMAGES_MAGIC);
+            images.writeInt(0);
+            images.writeInt(rows);
+            images.writeInt(cols);
+
+            labels.writeInt(IdxReader.LABELS_MAGIC);
+            labels.writeInt(0);
+
+            String line;
+
+            while ((line = csv.readLine()) != null) {
+                String[] lineItems = line.split(",");
+
+                labels.writeByte(Integer.parseInt(lineItems[0]));
+
+                for (int i = 1; i <= rows * cols; i++) {
+                    images.writeByte(Integer.parseInt(lineItems[i]));
+                }
+
+                count++;
+            }
+
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Could not convert " + csvPath, e);
+        }
+
+        writeCount(imagesPath, count);
+        writeCount(labelsPath, count);
+
+        return count;
+    }
+
+    private void writeCount(String path, int count) {
+        try (RandomAccessFile file = new RandomAccessFile(path, "rw")) {
+            file.seek(4);
+            file.writeInt(count);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Could not update header of " + path, e);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package Layer;
+
+import data.Gemm;
+import data.Tensor;
+
+// Lowers every input plane to a (filterSize^2) x (outRows * outCols) column matrix so that all filters
+// are applied with a single GEMM per plane.
+public class Im2colConvolutionEngine implements ConvolutionEngine {
+
+    @Override
+    public void forward(Tensor input, Tensor filters, int stepSize, Tensor output, Tensor workspace) {
+        int numFilters = filters.getChannels();
+        int filterSize = filters.getRows();
+        int patchSize = filterSize * filterSize;
+        int positions = output.getRows() * output.getCols();
+
+        for (int b = 0; b < input.getBatch(); b++) {
+            for (int c = 0; c < input.getChannels(); c++) {
+                im2col(input, b, c, filterSize, stepSize, output.getRows(), output.getCols(), workspace);
+                int outOffset = output.index(b, c * numFilters, 0, 0);
+
+                if (input.isFloat()) {
+                    Gemm.multiply(filters.floatData(), filters.offset(), workspace.floatData(), workspace.offset(),
+                            output.floatData(), outOffset, numFilters, positions, patchSize);
+                } else {
+                    Gemm.multiply(filters.data(), filters.offset(), workspace.data(), workspace.offset(),
+                            output.data(), outOffset, numFilters, positions, patchSize);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void accumulateFilterGradients(Tensor input, Tensor dLdO, int filterSize, int stepSize, Tensor filterGradients, Tensor workspace) {
+        int numFilters = dLdO.getChannels() / input.getChannels();
+        int patchSize = filterSize * filterSize;
+        int positions = dLdO.getRows() * dLdO.getCols();
+
+        for (int b = 0; b < input.getBatch(); b++) {
+            for (int c = 0; c < input.getChannels(); c++) {
+                im2col(input, b, c, filterSize, stepSize, dLdO.getRows(), dLdO.getCols(), workspace);
+                int errorOffset = dLdO.index(b, c * numFilters, 0, 0);
+
+                if (input.isFloat()) {
+                    Gemm.multiplyTransposedB(dLdO.floatData(), errorOffset, workspace.floatData(), workspace.offset(),
+                            filterGradients.floatData(), filterGradients.offset(), numFilters, patchSize, positions);
+                } else {
+                    Gemm.multiplyTransposedB(dLdO.data(), errorOffset, workspace.data(), workspace.offset(),
+                            filterGradients.data(), filterGradients.offset(), numFilters, patchSize, positions);
+                }
+            }
+        }
+    }
+
+    private void im2col(Tensor input, int b, int c, int filterSize, int stepSize, int outRows, int outCols, Tensor columns) {
+        int inCols = input.getCols();
+        int planeOffset = input.index(b, c, 0, 0);
+        int positions = outRows * outCols;
+
+        for (int x = 0; x < filterSize; x++) {
+            for (int y = 0; y < filterSize; y++) {
+                int row = columns.offset() + (x * filterSize + y) * positions;
+
+                for (int i = 0; i < outRows; i++) {
+                    int inputRow = planeOffset + (i * stepSize + x) * inCols + y;
+                    int colOffset = row + i * outCols;
+
+                    if (input.isFloat()) {
+                        copyStrided(input.floatData(), inputRow, stepSize, columns.floatData(), colOffset, outCols);
+                    } else {
+                        copyStrided(input.data(), inputRow, stepSize, columns.data(), colOffset, outCols);
+                    }
+                }
+            }
+        }
+    }
+
+    private void copyStrided(double[] in, int from, int stepSize, double[] cols, int to, int count) {
+        if (stepSize == 1) {
+            System.arraycopy(in, from, cols, to, count);
+            return;
+        }
+
+        for (int j = 0; j < count; j++) {
+            cols[to + j] = in[from + j * stepSize];
+        }
+    }
+
+    private void copyStrided(float[] in, int from, int stepSize, float[] cols, int to, int count) {
+        if (stepSize == 1) {
+            System.arraycopy(in, from, cols, to, count);
+            return;
+        }
+
+        for (int j = 0; j < count; j++) {
+            cols[to + j] = in[from + j * stepSize];
+        }
+    }
+
+    @Override
+    public int workspaceSize(int filterSize, int outputRows, int outputCols) {
+        return filterSize * filterSize * outputRows * outputCols;
+    }
+}
@@ -1,12 +1,23 @@
-
 package data;
 
+import java.nio.ByteBuffer;
+
 public class Image {
 
-    private double[][] data;
+    private ByteBuffer pixels;
+    private int rows;
+    private int cols;
     private int label;
 
     public double[][] getData() {
+        double[][] data = new double[rows][cols];
+
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                data[i][j] = getPixel(i * cols + j);
+            }
+        }
+
         return data;
     }
 
@@ -14,19 +25,83 @@ public class Image {
         return label;
     }
 
+    public int getRows() {
+        return rows;
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+    public int getPixel(int index) {
+        return pixels.get(index) & 0xFF;
+    }
+
+    // Pixels are stored as unsigned bytes, so values are rounded and clamped to 0-255.
     public Image(double[][] data, int label) {
-        this.data = data;
+        this.rows = data.length;
+        this.cols = data[0].length;
+        this.label = label;
+
+        byte[] bytes = new byte[rows * cols];
+
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                bytes[i * cols + j] = (byte) Math.max(0, Math.min(255, Math.round(data[i][j])));
+            }
+        }
+
+        this.pixels = ByteBuffer.wrap(bytes);
+    }
+
+    // Wraps unsigned 8-bit pixels without copying them, for example a slice of a dataset-wide
+    // array or of a memory-mapped IDX file.
+    public Image(ByteBuffer pixels, int rows, int cols, int label) {
+        this.pixels = pixels;
+        this.rows = rows;
+        this.cols = cols;
         this.label = label;
     }
 
+    public void copyTo(double[] target, int offset) {
+        copyTo(target, offset, 1.0);
+    }
+
+    // Writes pixel / scaleFactor for every pixel, row-major, starting at target[offset].
+    public void copyTo(double[] target, int offset, double scaleFactor) {
+        double scale = 1.0 / scaleFactor;
+
+        if (pixels.hasArray()) {
+            byte[] bytes = pixels.array();
+            int start = pixels.arrayOffset();
+
+            for (int k = 0; k < rows * cols; k++) {
+                target[offset + k] = (bytes[start + k] & 0xFF) * scale;
+            }
+            return;
+        }
+
+        for (int k = 0; k < rows * cols; k++) {
+            target[offset + k] = (pixels.get(k) & 0xFF) * scale;
+        }
+    }
+
+    public void copyTo(float[] target, int offset, double scaleFactor) {
+        float scale = (float) (1.0 / scaleFactor);
+
+        for (int k = 0; k < rows * cols; k++) {
+            target[offset + k] = getPixel(k) * scale;
+        }
+    }
+
     @Override
     public String toString(){
 
         String s = label + ", \n";
 
-        for(int i =0; i < data.length; i++){
-            for(int j =0; j < data[0].length; j++){
-                s+= data[i][j] + ", ";
+        for(int i =0; i < rows; i++){
+            for(int j =0; j < cols; j++){
+                s+= getPixel(i * cols + j) + ", ";
             }
             s+= "\n";
         }
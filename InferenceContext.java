@@ -0,0 +1,49 @@
+package Layer;
+
+import data.Precision;
+import data.Tensor;
+
+// Per-caller buffers for the stateless inference path. A context must not be shared between
+// threads, but any number of contexts can run against the same layers concurrently.
+public class InferenceContext {
+
+    private final Tensor[] outputs;
+    private final Tensor[] workspaces;
+    private Tensor input;
+
+    public InferenceContext(int layerCount) {
+        this.outputs = new Tensor[layerCount];
+        this.workspaces = new Tensor[layerCount];
+    }
+
+    public Tensor input(Precision precision, int batch, int channels, int rows, int cols) {
+        if (!fits(input, precision, batch, channels, rows, cols)) {
+            input = new Tensor(precision, batch, channels, rows, cols);
+        }
+
+        return input;
+    }
+
+    public Tensor output(int slot, Precision precision, int batch, int channels, int rows, int cols) {
+        if (!fits(outputs[slot], precision, batch, channels, rows, cols)) {
+            outputs[slot] = new Tensor(precision, batch, channels, rows, cols);
+        }
+
+        return outputs[slot];
+    }
+
+    public Tensor workspace(int slot, Precision precision, int size) {
+        Tensor buffer = workspaces[slot];
+
+        if (buffer == null || buffer.getPrecision() != precision || buffer.size() < size) {
+            buffer = new Tensor(precision, 1, 1, 1, Math.max(size, 1));
+            workspaces[slot] = buffer;
+        }
+
+        return buffer;
+    }
+
+    private boolean fits(Tensor buffer, Precision precision, int batch, int channels, int rows, int cols) {
+        return buffer != null && buffer.getPrecision() == precision && buffer.hasShape(batch, channels, rows, cols);
+    }
+}
@@ -0,0 +1,163 @@
+package network;
+
+import Layer.ConvolutionLayer;
+import Layer.FullyConnectedLayer;
+import Layer.Layer;
+import Layer.MaxPoolLayer;
+import data.Image;
+import data.Precision;
+import data.Tensor;
+
+import java.util.List;
+
+// A network frozen for inference: the layers become a flat array of steps executed in one loop, every
+// activation buffer is allocated up front for maxBatchSize images, and nothing is recorded for a backward
+// pass. Each step is dispatched through a switch to a concrete layer class, so every kernel call site sees a
+// single receiver type. Parameters are shared with the network the plan was compiled from.
+// A plan is not thread-safe; compile one per thread.
+public final class InferencePlan {
+
+    private static final int CONVOLUTION = 0;
+    private static final int MAX_POOL = 1;
+    private static final int FULLY_CONNECTED = 2;
+
+    private final int[] kinds;
+    private final ConvolutionLayer[] convolutions;
+    private final MaxPoolLayer[] pools;
+    private final FullyConnectedLayer[] denses;
+    private final Tensor[] buffers;
+    private final Tensor[] workspaces;
+    private final Tensor[][] views;
+    private final double scaleFactor;
+    private final int maxBatchSize;
+
+    InferencePlan(List<Layer> layers, double scaleFactor, int inputRows, int inputCols, int maxBatchSize) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive: " + maxBatchSize);
+        }
+
+        int steps = layers.size();
+        Precision precision = layers.get(0).getPrecision();
+
+        this.kinds = new int[steps];
+        this.convolutions = new ConvolutionLayer[steps];
+        this.pools = new MaxPoolLayer[steps];
+        this.denses = new FullyConnectedLayer[steps];
+        this.buffers = new Tensor[steps + 1];
+        this.workspaces = new Tensor[steps];
+        this.views = new Tensor[maxBatchSize + 1][];
+        this.scaleFactor = scaleFactor;
+        this.maxBatchSize = maxBatchSize;
+
+        buffers[0] = new Tensor(precision, maxBatchSize, 1, inputRows, inputCols);
+
+        for (int i = 0; i < steps; i++) {
+            Layer layer = layers.get(i);
+
+            if (layer instanceof ConvolutionLayer) {
+                kinds[i] = CONVOLUTION;
+                convolutions[i] = (ConvolutionLayer) layer;
+            } else if (layer instanceof MaxPoolLayer) {
+                kinds[i] = MAX_POOL;
+                pools[i] = (MaxPoolLayer) layer;
+            } else if (layer instanceof FullyConnectedLayer) {
+                kinds[i] = FULLY_CONNECTED;
+                denses[i] = (FullyConnectedLayer) layer;
+            } else {
+                throw new IllegalArgumentException("Unsupported layer type");
+            }
+
+            buffers[i + 1] = new Tensor(precision, maxBatchSize, layer.getOutputLength(), layer.getOutputRows(), layer.getOutputCols());
+            workspaces[i] = new Tensor(precision, 1, 1, 1, Math.max(1, layer.getWorkspaceSize()));
+        }
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    // Runs input, which must have the network's input shape and at most maxBatchSize samples. The returned
+    // tensor is a view of the plan's last buffer and is overwritten by the next call.
+    public Tensor run(Tensor input) {
+        Tensor[] batchViews = viewsFor(input.getBatch());
+        Tensor into = batchViews[0];
+
+        for (int i = 0; i < input.size(); i++) {
+            into.set(into.offset() + i, input.get(input.offset() + i));
+        }
+
+        return execute(batchViews);
+    }
+
+    public int predict(Image image) {
+        return predict(List.of(image))[0];
+    }
+
+    public int[] predict(List<Image> images) {
+        int[] predictions = new int[images.size()];
+
+        for (int start = 0; start < images.size(); start += maxBatchSize) {
+            int batch = Math.min(maxBatchSize, images.size() - start);
+            Tensor[] batchViews = viewsFor(batch);
+            Tensor input = batchViews[0];
+
+            for (int b = 0; b < batch; b++) {
+                if (input.isFloat()) {
+                    images.get(start + b).copyTo(input.floatData(), input.index(b, 0, 0, 0), scaleFactor);
+                } else {
+                    images.get(start + b).copyTo(input.data(), input.index(b, 0, 0, 0), scaleFactor);
+                }
+            }
+
+            Tensor output = execute(batchViews);
+
+            for (int b = 0; b < batch; b++) {
+                predictions[start + b] = NeuralNetwork.findMaxIndex(output, output.index(b, 0, 0, 0), output.sampleSize());
+            }
+        }
+
+        return predictions;
+    }
+
+    private Tensor execute(Tensor[] batchViews) {
+        for (int i = 0; i < kinds.length; i++) {
+            Tensor input = batchViews[i];
+            Tensor output = batchViews[i + 1];
+
+            switch (kinds[i]) {
+                case CONVOLUTION:
+                    convolutions[i].inferInto(input, output, workspaces[i]);
+                    break;
+                case MAX_POOL:
+                    pools[i].inferInto(input, output, workspaces[i]);
+                    break;
+                case FULLY_CONNECTED:
+                    denses[i].inferInto(input, output, workspaces[i]);
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown step kind " + kinds[i]);
+            }
+        }
+
+        return batchViews[kinds.length];
+    }
+
+    // Views over the first batch samples of every buffer, created once per batch size.
+    private Tensor[] viewsFor(int batch) {
+        if (batch < 1 || batch > maxBatchSize) {
+            throw new IllegalArgumentException("Batch of " + batch + " does not fit a plan compiled for " + maxBatchSize);
+        }
+
+        if (views[batch] == null) {
+            Tensor[] batchViews = new Tensor[buffers.length];
+
+            for (int i = 0; i < buffers.length; i++) {
+                batchViews[i] = buffers[i].samples(batch);
+            }
+
+            views[batch] = batchViews;
+        }
+
+        return views[batch];
+    }
+}
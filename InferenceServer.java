@@ -0,0 +1,336 @@
+package network;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import data.Image;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+// Serves predictions over HTTP on localhost. Requests are queued and a single batching thread groups them
+// into micro-batches of at most maxBatchSize images, waiting at most maxWaitMicros after the first image of
+// a batch arrived, then runs the group through one batched pass of a compiled InferencePlan.
+//
+//   POST /predict   body: rows*cols pixels, either raw bytes (application/octet-stream) or comma-separated 0-255
+//                   response: the predicted class
+//   GET  /stats     latency percentiles, throughput and batch sizes
+public class InferenceServer implements AutoCloseable {
+
+    private static final int LATENCY_SAMPLES = 10_000;
+    private static final long RESPONSE_TIMEOUT_SECONDS = 30;
+
+    private final NeuralNetwork network;
+    private final int maxBatchSize;
+    private final long maxWaitNanos;
+    private final BlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+    private final LatencyRecorder latencies = new LatencyRecorder(LATENCY_SAMPLES);
+    private final Thread batcher;
+    private final HttpServer server;
+    private final ExecutorService requestExecutor;
+
+    private volatile boolean running = true;
+    private long batches;
+    private long completed;
+    private final long startNanos = System.nanoTime();
+
+    public InferenceServer(NeuralNetwork network, int port, int maxBatchSize, long maxWaitMicros) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive: " + maxBatchSize);
+        }
+
+        this.network = network;
+        this.maxBatchSize = maxBatchSize;
+        this.maxWaitNanos = TimeUnit.MICROSECONDS.toNanos(maxWaitMicros);
+
+        try {
+            this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Could not bind port " + port, e);
+        }
+
+        this.requestExecutor = requestExecutor();
+        server.setExecutor(requestExecutor);
+        server.createContext("/predict", this::handlePredict);
+        server.createContext("/stats", this::handleStats);
+
+        this.batcher = new Thread(this::runBatches, "inference-batcher");
+        batcher.setDaemon(true);
+    }
+
+    public InferenceServer start() {
+        batcher.start();
+        server.start();
+        return this;
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    // Queues one image for the next micro-batch; usable in-process without going through HTTP.
+    public CompletableFuture<Integer> submit(Image image) {
+        if (!running) {
+            throw new IllegalStateException("Inference server is closed");
+        }
+
+        Request request = new Request(image);
+        queue.add(request);
+
+        // close() may have drained the queue between the check above and the add; then nobody else will
+        // complete this request.
+        if (!running && queue.remove(request)) {
+            request.result.completeExceptionally(new IllegalStateException("Inference server is closed"));
+        }
+        return request.result;
+    }
+
+    // A virtual thread per request where the JDK has them (21+), otherwise a cached platform thread pool.
+    private static ExecutorService requestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    private void runBatches() {
+        InferencePlan plan = network.compileInferencePlan(maxBatchSize);
+        List<Request> batch = new ArrayList<>(maxBatchSize);
+        List<Image> images = new ArrayList<>(maxBatchSize);
+
+        while (running) {
+            try {
+                Request first = queue.poll(100, TimeUnit.MILLISECONDS);
+
+                if (first == null) {
+                    continue;
+                }
+
+                batch.add(first);
+                long deadline = first.arrivalNanos + maxWaitNanos;
+
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    Request next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                break;
+            }
+
+            runBatch(batch, images, plan);
+            batch.clear();
+            images.clear();
+        }
+
+        failPending(batch);
+    }
+
+    private void runBatch(List<Request> batch, List<Image> images, InferencePlan plan) {
+        for (Request request : batch) {
+            images.add(request.image);
+        }
+
+        try {
+            int[] predictions = plan.predict(images);
+            long now = System.nanoTime();
+
+            for (int b = 0; b < batch.size(); b++) {
+                latencies.record(now - batch.get(b).arrivalNanos);
+                batch.get(b).result.complete(predictions[b]);
+            }
+
+            synchronized (this) {
+                batches++;
+                completed += batch.size();
+            }
+        } catch (RuntimeException e) {
+            for (Request request : batch) {
+                request.result.completeExceptionally(e);
+            }
+        }
+    }
+
+    private void failPending(List<Request> batch) {
+        queue.drainTo(batch);
+
+        for (Request request : batch) {
+            request.result.completeExceptionally(new IllegalStateException("Inference server is closed"));
+        }
+    }
+
+    private void handlePredict(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                respond(exchange, 405, "POST an image to /predict");
+                return;
+            }
+
+            Image image;
+
+            try (InputStream body = exchange.getRequestBody()) {
+                image = parseImage(body.readAllBytes(), exchange.getRequestHeaders().getFirst("Content-Type"));
+            } catch (IllegalArgumentException e) {
+                respond(exchange, 400, e.getMessage());
+                return;
+            }
+
+            try {
+                respond(exchange, 200, String.valueOf(submit(image).get(RESPONSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)));
+            } catch (IllegalStateException e) {
+                respond(exchange, 503, e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                respond(exchange, 503, "Interrupted");
+            } catch (TimeoutException e) {
+                respond(exchange, 503, "No prediction within " + RESPONSE_TIMEOUT_SECONDS + " s");
+            } catch (ExecutionException e) {
+                respond(exchange, 500, String.valueOf(e.getCause().getMessage()));
+            }
+        }
+    }
+
+    private void handleStats(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            respond(exchange, 200, statistics());
+        }
+    }
+
+    public String statistics() {
+        long[] sorted = latencies.snapshot();
+        long batchCount;
+        long completedCount;
+
+        synchronized (this) {
+            batchCount = batches;
+            completedCount = completed;
+        }
+
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+
+        return String.format("{\"requests\": %d, \"batches\": %d, \"meanBatchSize\": %.2f, \"throughput\": %.1f, "
+                        + "\"p50Micros\": %.1f, \"p99Micros\": %.1f}",
+                completedCount, batchCount, batchCount == 0 ? 0.0 : (double) completedCount / batchCount,
+                completedCount / seconds, percentile(sorted, 0.50) / 1e3, percentile(sorted, 0.99) / 1e3);
+    }
+
+    private Image parseImage(byte[] body, String contentType) {
+        int rows = network.getInputRows();
+        int cols = network.getInputCols();
+        byte[] pixels;
+
+        if (contentType != null && contentType.startsWith("application/octet-stream")) {
+            pixels = body;
+        } else {
+            String[] values = new String(body, StandardCharsets.US_ASCII).trim().split("\\s*,\\s*");
+            pixels = new byte[values.length];
+
+            for (int i = 0; i < values.length; i++) {
+                int value;
+
+                try {
+                    value = Integer.parseInt(values[i]);
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Not a pixel value: " + values[i]);
+                }
+                if (value < 0 || value > 255) {
+                    throw new IllegalArgumentException("Pixel out of range 0-255: " + value);
+                }
+                pixels[i] = (byte) value;
+            }
+        }
+
+        if (pixels.length != rows * cols) {
+            throw new IllegalArgumentException("Expected " + rows * cols + " pixels, got " + pixels.length);
+        }
+
+        return new Image(ByteBuffer.wrap(pixels), rows, cols, 0);
+    }
+
+    private void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, bytes.length);
+
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static double percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(quantile * sorted.length) - 1)];
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        server.stop(0);
+        batcher.interrupt();
+
+        try {
+            batcher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        failPending(new ArrayList<>());
+        requestExecutor.shutdown();
+    }
+
+    private static class Request {
+
+        final Image image;
+        final long arrivalNanos = System.nanoTime();
+        final CompletableFuture<Integer> result = new CompletableFuture<>();
+
+        Request(Image image) {
+            this.image = image;
+        }
+    }
+
+    // Keeps the most recent latencies in a ring buffer; percentiles are computed over that window.
+    private static class LatencyRecorder {
+
+        private final long[] samples;
+        private int count;
+        private int next;
+
+        LatencyRecorder(int capacity) {
+            this.samples = new long[capacity];
+        }
+
+        synchronized void record(long nanos) {
+            samples[next] = nanos;
+            next = (next + 1) % samples.length;
+            count = Math.min(count + 1, samples.length);
+        }
+
+        synchronized long[] snapshot() {
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            return sorted;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package network;
+
+import jdk.jfr.EventType;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// Fans timings out to the registered TrainingListeners and the cnn.* JFR events. Callers check enabled()
+// once per step and skip all timing when nothing is listening.
+class Instrumentation {
+
+    private static final EventType LAYER = EventType.getEventType(LayerEvent.class);
+    private static final EventType STEP = EventType.getEventType(TrainingStepEvent.class);
+    private static final EventType EPOCH = EventType.getEventType(EpochEvent.class);
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private final List<TrainingListener> listeners = new CopyOnWriteArrayList<>();
+    private final String[] layerNames;
+
+    Instrumentation(String[] layerNames) {
+        this.layerNames = layerNames;
+    }
+
+    void add(TrainingListener listener) {
+        listeners.add(listener);
+    }
+
+    void remove(TrainingListener listener) {
+        listeners.remove(listener);
+    }
+
+    boolean enabled() {
+        return !listeners.isEmpty() || LAYER.isEnabled() || STEP.isEnabled() || EPOCH.isEnabled();
+    }
+
+    LayerEvent beginLayer() {
+        if (!LAYER.isEnabled()) {
+            return null;
+        }
+
+        LayerEvent event = new LayerEvent();
+        event.begin();
+        return event;
+    }
+
+    void endLayer(LayerEvent event, int index, TrainingListener.Phase phase, int batchSize, long startNanos) {
+        long nanos = System.nanoTime() - startNanos;
+
+        for (TrainingListener listener : listeners) {
+            listener.onLayer(index, layerNames[index], phase, batchSize, nanos);
+        }
+
+        if (event != null) {
+            event.end();
+            event.index = index;
+            event.layer = layerNames[index];
+            event.phase = phase.name();
+            event.batchSize = batchSize;
+            event.commit();
+        }
+    }
+
+    TrainingStepEvent beginStep() {
+        if (!STEP.isEnabled()) {
+            return null;
+        }
+
+        TrainingStepEvent event = new TrainingStepEvent();
+        event.begin();
+        return event;
+    }
+
+    void endStep(TrainingStepEvent event, int batchSize, long startNanos, long startAllocated) {
+        long nanos = System.nanoTime() - startNanos;
+        long allocated = allocatedBytes() - startAllocated;
+
+        for (TrainingListener listener : listeners) {
+            listener.onStep(batchSize, nanos, allocated);
+        }
+
+        if (event != null) {
+            event.end();
+            event.batchSize = batchSize;
+            event.imagesPerSecond = batchSize * 1e9 / nanos;
+            event.allocatedBytes = allocated;
+            event.commit();
+        }
+    }
+
+    EpochEvent beginEpoch() {
+        if (!EPOCH.isEnabled()) {
+            return null;
+        }
+
+        EpochEvent event = new EpochEvent();
+        event.begin();
+        return event;
+    }
+
+    void endEpoch(EpochEvent event, int epoch, int images, long startNanos) {
+        long nanos = System.nanoTime() - startNanos;
+
+        for (TrainingListener listener : listeners) {
+            listener.onEpoch(epoch, images, nanos);
+        }
+
+        if (event != null) {
+            event.end();
+            event.epoch = epoch;
+            event.images = images;
+            event.imagesPerSecond = images * 1e9 / nanos;
+            event.commit();
+        }
+    }
+
+    // Bytes allocated so far by the calling thread, or 0 where the JVM does not report it.
+    long allocatedBytes() {
+        if (THREADS instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) THREADS).getCurrentThreadAllocatedBytes();
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,60 @@
+package data;
+
+// Element-wise and reduction kernels over flat arrays. INSTANCE is the Vector API implementation when the
+// jdk.incubator.vector module is present (run with --add-modules jdk.incubator.vector), otherwise the scalar one.
+// -Dcnn.simd=false forces the scalar kernels.
+public interface Kernels {
+
+    Kernels INSTANCE = select();
+
+    double dot(double[] a, int aOffset, double[] b, int bOffset, int length);
+
+    float dot(float[] a, int aOffset, float[] b, int bOffset, int length);
+
+    // y += alpha * x
+    void axpy(double alpha, double[] x, int xOffset, double[] y, int yOffset, int length);
+
+    void axpy(float alpha, float[] x, int xOffset, float[] y, int yOffset, int length);
+
+    // int8 variants for quantized inference; products are widened and accumulated in int.
+    int dot(byte[] a, int aOffset, byte[] b, int bOffset, int length);
+
+    void axpy(int alpha, byte[] x, int xOffset, int[] y, int yOffset, int length);
+
+    // Radix-2 FFT butterfly over complex runs stored as separate real and imaginary parts of one array:
+    // (a, b) <- (a + w * b, a - w * b) with twiddle w = wr + i * wi.
+    void butterfly(double[] x, int aRe, int aIm, int bRe, int bIm, double wr, double wi, int length);
+
+    void butterfly(float[] x, int aRe, int aIm, int bRe, int bIm, float wr, float wi, int length);
+
+    // Complex product y <- x * y.
+    void complexMultiply(double[] x, int xRe, int xIm, double[] y, int yRe, int yIm, int length);
+
+    void complexMultiply(float[] x, int xRe, int xIm, float[] y, int yRe, int yIm, int length);
+
+    void add(double[] a, int aOffset, double[] b, int bOffset, double[] out, int outOffset, int length);
+
+    void add(float[] a, int aOffset, float[] b, int bOffset, float[] out, int outOffset, int length);
+
+    void scale(double[] a, int aOffset, double scalar, double[] out, int outOffset, int length);
+
+    void scale(float[] a, int aOffset, float scalar, float[] out, int outOffset, int length);
+
+    // out = max(leak * in, in)
+    void leakyRelu(double[] in, int inOffset, double leak, double[] out, int outOffset, int length);
+
+    void leakyRelu(float[] in, int inOffset, float leak, float[] out, int outOffset, int length);
+
+    String name();
+
+    private static Kernels select() {
+        if (!"false".equals(System.getProperty("cnn.simd"))) {
+            try {
+                return (Kernels) Class.forName("data.SimdKernels").getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                // Vector module not resolved in this JVM
+            }
+        }
+        return new ScalarKernels();
+    }
+}
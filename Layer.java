@@ -1,6 +1,8 @@
 package Layer;
 
-import java.util.ArrayList;
+import data.Precision;
+import data.Tensor;
+
 import java.util.List;
 
 public abstract class Layer {
@@ -8,13 +10,78 @@ public abstract class Layer {
     private Layer nextLayer;
     private Layer previousLayer;
 
-    public abstract double[] getOutput(List<double[][]> input);
+    // Computes this layer's output and records what the backward pass needs, without calling the next layer.
+    public abstract Tensor forward(Tensor input);
+
+    // Accumulates this layer's parameter gradients and returns dL/dInput, without calling the previous layer.
+    public abstract Tensor backward(Tensor dLdO);
+
+    public Tensor getOutput(Tensor input) {
+        return forwardToNext(forward(input));
+    }
+
+    public void backPropagation(Tensor dLdO) {
+        Tensor dLdI = backward(dLdO);
+
+        if (getPreviousLayer() != null) {
+            getPreviousLayer().backPropagation(dLdI);
+        }
+    }
+
+    // Computes only this layer's output, without recording anything for backpropagation.
+    // All buffers come from the caller's context, so concurrent calls with distinct contexts are safe.
+    public abstract Tensor infer(Tensor input, InferenceContext context, int slot);
+
+    // The kernel behind infer: writes the output for every sample of input into output, which may be
+    // sized for more samples. workspace holds at least getWorkspaceSize() elements.
+    public abstract void inferInto(Tensor input, Tensor output, Tensor workspace);
+
+    public int getWorkspaceSize() {
+        return 0;
+    }
 
     public abstract double[] getOutput(double[] input);
 
     public abstract void backPropagation(double[] dLdO);
 
-    public abstract void backPropagation(List<double[][]> dLdO);
+    public double[] getOutput(List<double[][]> input) {
+        return getOutput(Tensor.fromMatrices(input).toPrecision(getPrecision())).toArray();
+    }
+
+    public void backPropagation(List<double[][]> dLdO) {
+        backPropagation(Tensor.fromMatrices(dLdO).toPrecision(getPrecision()));
+    }
+
+    public Tensor getParameters() {
+        return null;
+    }
+
+    public Tensor getGradients() {
+        return null;
+    }
+
+    public void applyGradients(int batchSize) {
+        applyGradients(batchSize, 1.0);
+    }
+
+    // Updates the parameters through the layer's optimizer, with its learning rate multiplied by learningRateScale.
+    public void applyGradients(int batchSize, double learningRateScale) {
+    }
+
+    // Replaces the optimizer (plain SGD by default) and resets its per-parameter state.
+    public void setOptimizer(Optimizer optimizer) {
+    }
+
+    // Allocates the activation and error buffers for the given batch size up front; the training loop
+    // reuses them for every batch of that size.
+    public void reserve(int batchSize) {
+    }
+
+    // A replica shares this layer's parameter arrays but owns its gradients and per-sample state,
+    // so replicas can run forward and backward passes on separate threads.
+    public abstract Layer replicate();
+
+    public abstract Precision getPrecision();
 
     public abstract int getOutputLength();
 
@@ -40,20 +107,14 @@ public abstract class Layer {
         this.previousLayer = previousLayer;
     }
 
-    protected List<double[][]> vectorToMatrix(double[] input, int inputLength, int inputRows, int inputCols) {
-        List<double[][]> matrix = new ArrayList<>();
-
-        int index = 0;
-        for (int l = 0; l < inputLength; l++) {
-            double[][] layer = new double[inputRows][inputCols];
-            for (int i = 0; i < inputRows; i++) {
-                for (int j = 0; j < inputCols; j++) {
-                    layer[i][j] = input[index++];
-                }
-            }
-            matrix.add(layer);
+    protected Tensor reuseOrAllocate(Tensor buffer, Precision precision, int batch, int channels, int rows, int cols) {
+        if (buffer != null && buffer.getPrecision() == precision && buffer.hasShape(batch, channels, rows, cols)) {
+            return buffer;
         }
+        return new Tensor(precision, batch, channels, rows, cols);
+    }
 
-        return matrix;
+    protected Tensor forwardToNext(Tensor output) {
+        return getNextLayer() == null ? output : getNextLayer().getOutput(output);
     }
 }
@@ -0,0 +1,187 @@
+package benchmark;
+
+import Layer.ConvolutionAlgorithm;
+import Layer.ConvolutionLayer;
+import Layer.FullyConnectedLayer;
+import Layer.MaxPoolLayer;
+import data.DataReader;
+import data.Image;
+import data.MatrixUtility;
+import data.Precision;
+import data.Tensor;
+import network.NetworkBuilder;
+import network.NeuralNetwork;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// Runs the layer kernels and a full training epoch on synthetic MNIST-shaped data.
+// Usage: java benchmark.LayerBenchmarks [filter substring] [epoch images]
+public class LayerBenchmarks {
+
+    private static final long SEED = 123;
+
+    public static void main(String[] args) throws IOException {
+        String filter = args.length > 0 ? args[0] : "";
+        int epochImages = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+
+        Benchmark benchmark = new Benchmark(3, 5, 500);
+        Random random = new Random(SEED);
+
+        for (Precision precision : Precision.values()) {
+            // Filter size and input side: a small filter, the one Main uses, and a large one.
+            for (int[] shape : new int[][]{{3, 28}, {5, 28}, {11, 32}}) {
+                int size = shape[0];
+                int side = shape[1];
+
+                for (ConvolutionAlgorithm algorithm : ConvolutionAlgorithm.values()) {
+                    String prefix = "conv" + size + "x" + size + "." + algorithm + "." + precision;
+                    ConvolutionLayer conv = new ConvolutionLayer(size, 1, 1, side, side, SEED, 8, 0.1, algorithm, precision);
+                    Tensor input = randomTensor(random, precision, 1, 1, side, side);
+                    Tensor error = randomTensor(random, precision, 1, conv.getOutputLength(), conv.getOutputRows(), conv.getOutputCols());
+                    conv.convolutionForwardPass(input);
+
+                    run(benchmark, filter, prefix + ".forward", () -> conv.convolutionForwardPass(input));
+                    run(benchmark, filter, prefix + ".backPropagation", () -> {
+                        conv.backPropagation(error);
+                        return conv.getGradients();
+                    });
+                }
+            }
+
+            MaxPoolLayer pool = new MaxPoolLayer(2, 3, 8, 24, 24, precision);
+            Tensor poolInput = randomTensor(random, precision, 1, 8, 24, 24);
+            Tensor poolError = randomTensor(random, precision, 1, 8, pool.getOutputRows(), pool.getOutputCols());
+            pool.maxPoolForwardPass(poolInput);
+
+            run(benchmark, filter, "maxPool." + precision + ".forward", () -> pool.maxPoolForwardPass(poolInput));
+            run(benchmark, filter, "maxPool." + precision + ".backPropagation", () -> {
+                pool.backPropagation(poolError);
+                return poolError;
+            });
+
+            FullyConnectedLayer dense = new FullyConnectedLayer(8 * 11 * 11, 10, SEED, 0.1, precision);
+            Tensor denseInput = randomTensor(random, precision, 1, 1, 1, 8 * 11 * 11);
+            Tensor denseError = randomTensor(random, precision, 1, 1, 1, 10);
+            dense.getOutput(denseInput);
+
+            run(benchmark, filter, "dense." + precision + ".forward", () -> dense.getOutput(denseInput));
+            run(benchmark, filter, "dense." + precision + ".backPropagation", () -> {
+                dense.backPropagation(denseError);
+                return dense.getGradients();
+            });
+
+            FullyConnectedLayer hidden = new FullyConnectedLayer(8 * 11 * 11, 1024, SEED, 0.1, precision);
+            Tensor hiddenError = randomTensor(random, precision, 1, 1, 1, 1024);
+            hidden.getOutput(denseInput);
+
+            run(benchmark, filter, "dense1024." + precision + ".forward", () -> hidden.getOutput(denseInput));
+            run(benchmark, filter, "dense1024." + precision + ".backPropagation", () -> {
+                hidden.backPropagation(hiddenError);
+                return hidden.getGradients();
+            });
+        }
+
+        double[][] a = randomMatrix(random, 24, 24);
+        double[][] b = randomMatrix(random, 24, 24);
+        run(benchmark, filter, "matrix.add", () -> MatrixUtility.add(a, b));
+        run(benchmark, filter, "matrix.multiply", () -> MatrixUtility.multiply(a, 0.5));
+        double[][] out = new double[24][24];
+        run(benchmark, filter, "matrix.add(out)", () -> MatrixUtility.add(a, b, out));
+        run(benchmark, filter, "matrix.multiply(out)", () -> MatrixUtility.multiply(a, 0.5, out));
+        run(benchmark, filter, "matrix.leakyRelu(out)", () -> MatrixUtility.leakyRelu(a, 0.01, out));
+
+        File csv = writeSyntheticCsv(random, 1000);
+        run(benchmark, filter, "dataReader.readData(1000 rows)", () -> new DataReader().readData(csv.getPath()));
+
+        List<Image> images = syntheticImages(random, epochImages);
+        Benchmark epochBenchmark = new Benchmark(1, 3, 1);
+
+        for (Precision precision : Precision.values()) {
+            for (int batchSize : new int[]{1, 32}) {
+                NeuralNetwork network = mnistNetwork(precision);
+                run(epochBenchmark, filter, "epoch." + precision + ".batch" + batchSize + "(" + epochImages + " images)", () -> {
+                    network.conductTraining(images, batchSize);
+                    return network;
+                });
+            }
+        }
+    }
+
+    private static void run(Benchmark benchmark, String filter, String name, Benchmark.Operation operation) {
+        if (name.contains(filter)) {
+            benchmark.run(name, operation);
+        }
+    }
+
+    private static NeuralNetwork mnistNetwork(Precision precision) {
+        NetworkBuilder builder = new NetworkBuilder(28, 28, 256 * 100, precision);
+        builder.addConvolutionLayer(8, 5, 1, 0.1, SEED);
+        builder.addMaxPoolLayer(3, 2);
+        builder.addFullyConnectedLayer(10, 0.1, SEED);
+        return builder.build();
+    }
+
+    private static Tensor randomTensor(Random random, Precision precision, int batch, int channels, int rows, int cols) {
+        Tensor tensor = new Tensor(precision, batch, channels, rows, cols);
+
+        for (int i = 0; i < tensor.size(); i++) {
+            tensor.set(i, random.nextGaussian());
+        }
+
+        return tensor;
+    }
+
+    private static double[][] randomMatrix(Random random, int rows, int cols) {
+        double[][] matrix = new double[rows][cols];
+
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                matrix[i][j] = random.nextGaussian();
+            }
+        }
+
+        return matrix;
+    }
+
+    private static List<Image> syntheticImages(Random random, int count) {
+        List<Image> images = new ArrayList<>();
+
+        for (int n = 0; n < count; n++) {
+            double[][] pixels = new double[28][28];
+
+            for (int i = 0; i < 28; i++) {
+                for (int j = 0; j < 28; j++) {
+                    pixels[i][j] = random.nextInt(256);
+                }
+            }
+
+            images.add(new Image(pixels, random.nextInt(10)));
+        }
+
+        return images;
+    }
+
+    private static File writeSyntheticCsv(Random random, int rows) throws IOException {
+        File file = File.createTempFile("mnist-bench", ".csv");
+        file.deleteOnExit();
+
+        try (PrintWriter writer = new PrintWriter(file)) {
+            for (int n = 0; n < rows; n++) {
+                StringBuilder line = new StringBuilder().append(random.nextInt(10));
+
+                for (int i = 0; i < 28 * 28; i++) {
+                    line.append(',').append(random.nextInt(256));
+                }
+
+                writer.println(line);
+            }
+        }
+
+        return file;
+    }
+}
@@ -0,0 +1,24 @@
+package network;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("cnn.Layer")
+@Label("Layer Pass")
+@Category("CNN")
+class LayerEvent extends Event {
+
+    @Label("Index")
+    int index;
+
+    @Label("Layer")
+    String layer;
+
+    @Label("Phase")
+    String phase;
+
+    @Label("Batch Size")
+    int batchSize;
+}
@@ -0,0 +1,39 @@
+package network;
+
+// Multiplier applied to every layer's learning rate, as a function of the number of updates taken so far.
+public interface LearningRateSchedule {
+
+    double factor(int step);
+
+    static LearningRateSchedule constant() {
+        return step -> 1.0;
+    }
+
+    // Multiplies the rate by gamma every stepSize updates.
+    static LearningRateSchedule stepDecay(int stepSize, double gamma) {
+        if (stepSize < 1) {
+            throw new IllegalArgumentException("Step size must be positive: " + stepSize);
+        }
+        return step -> Math.pow(gamma, step / stepSize);
+    }
+
+    static LearningRateSchedule exponential(double gamma) {
+        return step -> Math.pow(gamma, step);
+    }
+
+    // Cosine annealing from 1 down to minFactor over totalSteps updates, then held at minFactor.
+    static LearningRateSchedule cosine(int totalSteps, double minFactor) {
+        if (totalSteps < 1) {
+            throw new IllegalArgumentException("Total steps must be positive: " + totalSteps);
+        }
+        return step -> {
+            double progress = Math.min(1.0, (double) step / totalSteps);
+            return minFactor + (1 - minFactor) * 0.5 * (1 + Math.cos(Math.PI * progress));
+        };
+    }
+
+    // Ramps linearly from 1/warmupSteps up to the wrapped schedule over the first warmupSteps updates.
+    static LearningRateSchedule warmup(int warmupSteps, LearningRateSchedule after) {
+        return step -> step < warmupSteps ? (step + 1.0) / warmupSteps * after.factor(step) : after.factor(step);
+    }
+}
@@ -0,0 +1,131 @@
+package network;
+
+import data.IdxReader;
+import data.Image;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Test harness for distributed training on one machine: runs a ParameterServer in this JVM and starts each
+// worker as a separate JVM on localhost, with the same classpath and JVM options. Workers load the initial
+// model from a temporary checkpoint and train on disjoint contiguous shards of an IDX data set; the server
+// updates the given network in place.
+public class LocalTrainingCluster {
+
+    private final int workers;
+    private final ParameterServer.Mode mode;
+    private final int staleness;
+    private final boolean compress;
+
+    public LocalTrainingCluster(int workers, ParameterServer.Mode mode, int staleness, boolean compress) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("Worker count must be positive: " + workers);
+        }
+
+        this.workers = workers;
+        this.mode = mode;
+        this.staleness = staleness;
+        this.compress = compress;
+    }
+
+    // Returns the number of updates the server applied.
+    public int train(NeuralNetwork network, String imagesPath, String labelsPath, int epochs, int batchSize) {
+        File model = createTempFile();
+        List<Process> processes = new ArrayList<>();
+
+        try (ParameterServer server = new ParameterServer(network, 0, workers, mode, staleness).start()) {
+            new ModelCheckpoint().save(network, model.getPath());
+
+            for (int shard = 0; shard < workers; shard++) {
+                processes.add(startWorker(server.getPort(), model, imagesPath, labelsPath, shard, epochs, batchSize));
+            }
+
+            // The server answers nobody until every worker has joined, so the first failed worker closes it; that
+            // drops the others instead of leaving them waiting for a worker that will never connect.
+            AtomicInteger failure = new AtomicInteger();
+            List<CompletableFuture<Void>> exits = new ArrayList<>();
+
+            for (Process process : processes) {
+                exits.add(process.onExit().thenAccept(exited -> {
+                    if (exited.exitValue() != 0 && failure.compareAndSet(0, exited.exitValue())) {
+                        server.close();
+                    }
+                }));
+            }
+
+            CompletableFuture.allOf(exits.toArray(new CompletableFuture<?>[0])).get();
+
+            if (failure.get() != 0) {
+                throw new IllegalStateException("Worker process exited with status " + failure.get());
+            }
+
+            server.awaitCompletion();
+            return server.getVersion();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for workers", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Could not wait for worker processes", e);
+        } finally {
+            for (Process process : processes) {
+                process.destroy();
+            }
+            model.delete();
+        }
+    }
+
+    private static File createTempFile() {
+        try {
+            return File.createTempFile("cluster-model", ".cnn");
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Could not create temporary model file", e);
+        }
+    }
+
+    private Process startWorker(int port, File model, String imagesPath, String labelsPath, int shard, int epochs, int batchSize) {
+        List<String> command = new ArrayList<>();
+
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(LocalTrainingCluster.class.getName());
+        command.addAll(List.of("localhost", String.valueOf(port), model.getPath(), imagesPath, labelsPath,
+                String.valueOf(shard), String.valueOf(workers), String.valueOf(epochs), String.valueOf(batchSize),
+                String.valueOf(compress)));
+
+        try {
+            return new ProcessBuilder(command).inheritIO().start();
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Could not start worker process", e);
+        }
+    }
+
+    // Worker process entry point:
+    //   host port model images labels shard shards epochs batchSize compress
+    public static void main(String[] args) {
+        String host = args[0];
+        int port = Integer.parseInt(args[1]);
+        NeuralNetwork network = new ModelCheckpoint().load(args[2]);
+        List<Image> images = new IdxReader().readData(args[3], args[4]);
+        int shard = Integer.parseInt(args[5]);
+        int shards = Integer.parseInt(args[6]);
+        int epochs = Integer.parseInt(args[7]);
+        int batchSize = Integer.parseInt(args[8]);
+        boolean compress = Boolean.parseBoolean(args[9]);
+
+        List<Image> part = images.subList((int) ((long) images.size() * shard / shards), (int) ((long) images.size() * (shard + 1) / shards));
+
+        try (ParameterWorker worker = new ParameterWorker(network, host, port, compress)) {
+            for (int epoch = 0; epoch < epochs; epoch++) {
+                worker.conductTraining(part, batchSize);
+            }
+        }
+    }
+}
@@ -1,43 +1,114 @@
-import data.DataReader;
+import data.Dataset;
+import data.IdxReader;
+import data.IdxWriter;
 import data.Image;
+import data.StreamingDataset;
+import network.InferenceServer;
+import network.LocalTrainingCluster;
+import network.ModelCheckpoint;
 import network.NetworkBuilder;
 import network.NeuralNetwork;
+import network.ParameterServer;
+import network.QuantizedNetwork;
+import network.Quantizer;
+import network.TrainingListener;
 
+import java.io.File;
 import java.util.List;
-
-import static java.util.Collections.shuffle;
+import java.util.concurrent.ForkJoinPool;
 
 public class Main {
 
     public static void main(String[] args) {
 
+        if (args.length > 0 && args[0].equals("serve")) {
+            serve(args.length > 1 ? Integer.parseInt(args[1]) : 8080);
+            return;
+        }
+
+        if (args.length > 0 && args[0].equals("distributed")) {
+            distributed(args.length > 1 ? Integer.parseInt(args[1]) : 4);
+            return;
+        }
+
         long SEED = 123;
 
         System.out.println("Starting data loading...");
 
-        List<Image> imagesTest = new DataReader().readData("data/mnist_test.csv");
-        List<Image> imagesTrain = new DataReader().readData("data/mnist_train.csv");
+        List<Image> imagesTest = loadImages("data/mnist_test");
+        List<Image> imagesTrain = loadImages("data/mnist_train");
+        Dataset trainingSet = new StreamingDataset(imagesTrain::stream, 10_000, SEED);
 
         System.out.println("Images Train size: " + imagesTrain.size());
         System.out.println("Images Test size: " + imagesTest.size());
 
-        NetworkBuilder builder = new NetworkBuilder(28, 28, 256 * 100);
-        builder.addConvolutionLayer(8, 5, 1, 0.1, SEED);
-        builder.addMaxPoolLayer(3, 2);
-        builder.addFullyConnectedLayer(10, 0.1, SEED);
-
-        NeuralNetwork net = builder.build();
+        NeuralNetwork net = buildNetwork(SEED);
+        net.addTrainingListener(new TrainingListener() {
+            @Override
+            public void onEpoch(int epoch, int images, long nanos) {
+                System.out.printf("Epoch %d: %d images in %.1f s (%.0f images/s)%n", epoch, images, nanos / 1e9, images * 1e9 / nanos);
+            }
+        });
 
-        float rate = net.assessAccuracy(imagesTest);
+        float rate = net.assessAccuracy(imagesTest, ForkJoinPool.commonPool());
         System.out.println("Pre training success rate: " + rate);
 
         int epochs = 3;
 
         for (int i = 0; i < epochs; i++) {
-            shuffle(imagesTrain);
-            net.conductTraining(imagesTrain);
-            rate = net.assessAccuracy(imagesTest);
+            net.conductTraining(trainingSet, 1);
+            rate = net.assessAccuracy(imagesTest, ForkJoinPool.commonPool());
             System.out.println("Success rate after round " + i + ": " + rate);
         }
+
+        new ModelCheckpoint().save(net, "data/model.cnn");
+
+        Quantizer quantizer = new Quantizer();
+        QuantizedNetwork quantized = quantizer.quantize(net, imagesTrain.subList(0, Math.min(1000, imagesTrain.size())));
+        System.out.println("int8: " + quantizer.compare(net, quantized, imagesTest));
+    }
+
+    private static NeuralNetwork buildNetwork(long seed) {
+        NetworkBuilder builder = new NetworkBuilder(28, 28, 256 * 100);
+        builder.addConvolutionLayer(8, 5, 1, 0.1, seed);
+        builder.addMaxPoolLayer(3, 2);
+        builder.addFullyConnectedLayer(10, 0.1, seed);
+        return builder.build();
+    }
+
+    // Trains one epoch with a parameter server in this process and the given number of worker processes.
+    private static void distributed(int workers) {
+        List<Image> imagesTest = loadImages("data/mnist_test");
+        ensureIdx("data/mnist_train");
+
+        NeuralNetwork net = buildNetwork(123);
+        LocalTrainingCluster cluster = new LocalTrainingCluster(workers, ParameterServer.Mode.SYNCHRONOUS, 0, true);
+        int updates = cluster.train(net, "data/mnist_train-images.idx3-ubyte", "data/mnist_train-labels.idx1-ubyte", 1, 1);
+
+        System.out.println(updates + " updates from " + workers + " workers, success rate: " + net.assessAccuracy(imagesTest, ForkJoinPool.commonPool()));
+    }
+
+    // Serves the model saved by a previous training run until the process is stopped.
+    private static void serve(int port) {
+        NeuralNetwork net = new ModelCheckpoint().load("data/model.cnn");
+        InferenceServer server = new InferenceServer(net, port, 64, 2_000).start();
+
+        System.out.println("Serving data/model.cnn on http://localhost:" + server.getPort() + "/predict");
+    }
+
+    private static List<Image> loadImages(String name) {
+        ensureIdx(name);
+        return new IdxReader().readData(name + "-images.idx3-ubyte", name + "-labels.idx1-ubyte");
+    }
+
+    // Converts name.csv to the IDX files the readers and worker processes use, unless they already exist.
+    private static void ensureIdx(String name) {
+        String imagesPath = name + "-images.idx3-ubyte";
+        String labelsPath = name + "-labels.idx1-ubyte";
+
+        if (!new File(imagesPath).exists() || !new File(labelsPath).exists()) {
+            System.out.println("Converting " + name + ".csv to IDX...");
+            new IdxWriter().convertCsv(name + ".csv", imagesPath, labelsPath);
+        }
     }
 }
@@ -4,54 +4,103 @@ public class MatrixUtility {
 
     public static double[][] add(double[][] a, double[][] b){
 
-        double[][] out = new double[a.length][a[0].length];
+        return add(a, b, new double[a.length][a[0].length]);
 
-        for(int i = 0; i < a.length; i++){
-            for(int j = 0; j < a[0].length; j++){
-                out[i][j] = a[i][j] + b[i][j];
-            }
-        }
+    }
 
-        return out;
+    public static double[] add(double[] a, double[] b){
 
+        return add(a, b, new double[a.length]);
     }
 
-    public static double[] add(double[] a, double[] b){
+    public static double[][] multiply(double[][] a, double scalar){
 
-        double[] out = new double[a.length];
+        return multiply(a, scalar, new double[a.length][a[0].length]);
 
-        for(int i = 0; i < a.length; i++){
-            out[i] = a[i] + b[i];
+    }
+
+    public static double[] multiply(double[] a, double scalar){
+
+        return multiply(a, scalar, new double[a.length]);
+    }
+
+    // In-place variants write into an existing array instead of allocating; they return it for chaining.
+
+    public static double[][] add(double[][] a, double[][] b, double[][] out){
 
+        for(int i = 0; i < a.length; i++){
+            Kernels.INSTANCE.add(a[i], 0, b[i], 0, out[i], 0, a[i].length);
         }
+
         return out;
     }
 
-    public static double[][] multiply(double[][] a, double scalar){
+    public static double[] add(double[] a, double[] b, double[] out){
 
-        double[][] out = new double[a.length][a[0].length];
+        Kernels.INSTANCE.add(a, 0, b, 0, out, 0, a.length);
+
+        return out;
+    }
+
+    public static double[][] addInPlace(double[][] a, double[][] b){
+        return add(a, b, a);
+    }
+
+    public static double[] addInPlace(double[] a, double[] b){
+        return add(a, b, a);
+    }
+
+    public static double[][] multiply(double[][] a, double scalar, double[][] out){
 
         for(int i = 0; i < a.length; i++){
-            for(int j = 0; j < a[0].length; j++){
-                out[i][j] = a[i][j]*scalar;
-            }
+            Kernels.INSTANCE.scale(a[i], 0, scalar, out[i], 0, a[i].length);
         }
 
         return out;
+    }
+
+    public static double[] multiply(double[] a, double scalar, double[] out){
+
+        Kernels.INSTANCE.scale(a, 0, scalar, out, 0, a.length);
+
+        return out;
+    }
 
+    public static double[][] multiplyInPlace(double[][] a, double scalar){
+        return multiply(a, scalar, a);
     }
 
-    public static double[] multiply(double[] a, double scalar){
+    public static double[] multiplyInPlace(double[] a, double scalar){
+        return multiply(a, scalar, a);
+    }
 
-        double[] out = new double[a.length];
+    public static double[][] leakyRelu(double[][] a, double leak){
 
-        for(int i = 0; i < a.length; i++){
-            out[i] = a[i]*scalar;
+        return leakyRelu(a, leak, new double[a.length][a[0].length]);
 
+    }
+
+    public static double[] leakyRelu(double[] a, double leak){
+
+        return leakyRelu(a, leak, new double[a.length]);
+
+    }
+
+    // out = max(leak * a, a), elementwise
+    public static double[][] leakyRelu(double[][] a, double leak, double[][] out){
+
+        for(int i = 0; i < a.length; i++){
+            Kernels.INSTANCE.leakyRelu(a[i], 0, leak, out[i], 0, a[i].length);
         }
+
         return out;
     }
 
+    public static double[] leakyRelu(double[] a, double leak, double[] out){
+
+        Kernels.INSTANCE.leakyRelu(a, 0, leak, out, 0, a.length);
 
+        return out;
+    }
 
 }
\ No newline at end of file
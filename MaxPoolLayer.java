@@ -1,6 +1,8 @@
 package Layer;
 
-import java.util.ArrayList;
+import data.Precision;
+import data.Tensor;
+
 import java.util.List;
 
 public class MaxPoolLayer extends Layer {
@@ -11,112 +13,212 @@ public class MaxPoolLayer extends Layer {
     private int inLength;
     private int inRows;
     private int inCols;
+    private Precision precision;
 
-    List<int[][]> lastMaxRow;
-    List<int[][]> lastMaxCol;
-
-    // Make nextLayer and previousLayer protected to allow access from subclasses
-    protected Layer nextLayer;
-    protected Layer previousLayer;
+    // Flat index of the winning element within its input plane, -1 when no element was selected
+    private int[] lastMaxIndex;
+    private int lastBatch;
+    private Tensor output;
+    private Tensor inputError;
 
     public MaxPoolLayer(int stepSize, int windowSize, int inLength, int inRows, int inCols) {
+        this(stepSize, windowSize, inLength, inRows, inCols, Precision.DOUBLE);
+    }
+
+    public MaxPoolLayer(int stepSize, int windowSize, int inLength, int inRows, int inCols, Precision precision) {
         this.stepSize = stepSize;
         this.windowSize = windowSize;
         this.inLength = inLength;
         this.inRows = inRows;
         this.inCols = inCols;
+        this.precision = precision;
     }
 
     public List<double[][]> maxPoolForwardPass(List<double[][]> input) {
-        List<double[][]> output = new ArrayList<>();
-        lastMaxRow = new ArrayList<>();
-        lastMaxCol = new ArrayList<>();
+        return maxPoolForwardPass(Tensor.fromMatrices(input).toPrecision(precision)).toMatrices();
+    }
 
-        for (double[][] singleInput : input) {
-            output.add(pool(singleInput));
-        }
+    public Tensor maxPoolForwardPass(Tensor input) {
+        reserve(input.getBatch());
+        lastBatch = input.getBatch();
+
+        poolAll(input, output, lastMaxIndex);
 
         return output;
     }
 
+    @Override
+    public Tensor infer(Tensor input, InferenceContext context, int slot) {
+        Tensor result = context.output(slot, precision, input.getBatch(), inLength, getOutputRows(), getOutputCols());
+        inferInto(input, result, null);
+        return result;
+    }
+
+    @Override
+    public void inferInto(Tensor input, Tensor output, Tensor workspace) {
+        poolAll(input, output, null);
+    }
+
+    private void poolAll(Tensor input, Tensor result, int[] maxIndices) {
+        int inPlane = inRows * inCols;
+        int outPlane = getOutputRows() * getOutputCols();
+
+        for (int p = 0; p < input.getBatch() * inLength; p++) {
+            if (precision == Precision.FLOAT) {
+                pool(input.floatData(), input.offset() + p * inPlane,
+                        result.floatData(), result.offset() + p * outPlane, maxIndices, p * outPlane);
+            } else {
+                pool(input.data(), input.offset() + p * inPlane,
+                        result.data(), result.offset() + p * outPlane, maxIndices, p * outPlane);
+            }
+        }
+    }
+
     public double[][] pool(double[][] input) {
-        double[][] output = new double[getOutputRows()][getOutputCols()];
+        Tensor single = Tensor.fromMatrices(List.<double[][]>of(input));
+        double[] out = new double[getOutputRows() * getOutputCols()];
 
-        int[][] maxRows = new int[getOutputRows()][getOutputCols()];
-        int[][] maxCols = new int[getOutputRows()][getOutputCols()];
+        pool(single.data(), 0, out, 0, new int[out.length], 0);
+
+        return Tensor.wrap(out, 1, getOutputRows(), getOutputCols()).toMatrices().get(0);
+    }
 
-        for (int r = 0; r < getOutputRows(); r += stepSize) {
-            for (int c = 0; c < getOutputCols(); c += stepSize) {
-                double max = Double.MIN_VALUE;
-                maxRows[r][c] = -1;
-                maxCols[r][c] = -1;
+    private void pool(double[] input, int inOffset, double[] output, int outOffset, int[] maxIndices, int maxOffset) {
+        int outRows = getOutputRows();
+        int outCols = getOutputCols();
+
+        for (int r = 0; r < outRows; r++) {
+            for (int c = 0; c < outCols; c++) {
+                double max = Double.NEGATIVE_INFINITY;
+                int maxIndex = -1;
 
                 for (int x = 0; x < windowSize; x++) {
+                    int row = r * stepSize + x;
+
                     for (int y = 0; y < windowSize; y++) {
-                        if (max < input[r + x][c + y]) {
-                            max = input[r + x][c + y];
-                            maxRows[r][c] = r + x;
-                            maxCols[r][c] = c + y;
+                        int index = row * inCols + c * stepSize + y;
+
+                        if (max < input[inOffset + index]) {
+                            max = input[inOffset + index];
+                            maxIndex = index;
                         }
                     }
                 }
 
-                output[r][c] = max;
+                output[outOffset + r * outCols + c] = max;
+
+                if (maxIndices != null) {
+                    maxIndices[maxOffset + r * outCols + c] = maxIndex;
+                }
             }
         }
+    }
 
-        lastMaxRow.add(maxRows);
-        lastMaxCol.add(maxCols);
+    private void pool(float[] input, int inOffset, float[] output, int outOffset, int[] maxIndices, int maxOffset) {
+        int outRows = getOutputRows();
+        int outCols = getOutputCols();
 
-        return output;
+        for (int r = 0; r < outRows; r++) {
+            for (int c = 0; c < outCols; c++) {
+                float max = Float.NEGATIVE_INFINITY;
+                int maxIndex = -1;
+
+                for (int x = 0; x < windowSize; x++) {
+                    int row = r * stepSize + x;
+
+                    for (int y = 0; y < windowSize; y++) {
+                        int index = row * inCols + c * stepSize + y;
+
+                        if (max < input[inOffset + index]) {
+                            max = input[inOffset + index];
+                            maxIndex = index;
+                        }
+                    }
+                }
+
+                output[outOffset + r * outCols + c] = max;
+
+                if (maxIndices != null) {
+                    maxIndices[maxOffset + r * outCols + c] = maxIndex;
+                }
+            }
+        }
     }
 
     @Override
-    public double[] getOutput(List<double[][]> input) {
-        List<double[][]> outputPool = maxPoolForwardPass(input);
-        return nextLayer.getOutput(outputPool);
+    public Tensor forward(Tensor input) {
+        return maxPoolForwardPass(input);
     }
 
     @Override
     public double[] getOutput(double[] input) {
-        List<double[][]> matrixList = vectorToMatrix(input, inLength, inRows, inCols);
-        return getOutput(matrixList);
+        return getOutput(Tensor.wrap(input, inLength, inRows, inCols).toPrecision(precision)).toArray();
     }
 
     @Override
     public void backPropagation(double[] dLdO) {
-        List<double[][]> matrixList = vectorToMatrix(dLdO, getOutputLength(), getOutputRows(), getOutputCols());
-        backPropagation(matrixList);
+        backPropagation(Tensor.wrap(dLdO, getOutputLength(), getOutputRows(), getOutputCols()).toPrecision(precision));
     }
 
     @Override
-    public void backPropagation(List<double[][]> dLdO) {
-        List<double[][]> dXdL = new ArrayList<>();
+    public Tensor backward(Tensor dLdO) {
+        int outPlane = getOutputRows() * getOutputCols();
+        int planes = lastBatch * inLength;
+        Tensor dXdL = inputError = reuseOrAllocate(inputError, precision, lastBatch, inLength, inRows, inCols);
+        dXdL.fill(0);
 
-        int l = 0;
-        for (double[][] array : dLdO) {
-            double[][] error = new double[inRows][inCols];
+        for (int p = 0; p < planes; p++) {
+            int errorOffset = p * inRows * inCols;
+            int gradientOffset = dLdO.offset() + p * outPlane;
 
-            for (int r = 0; r < getOutputRows(); r++) {
-                for (int c = 0; c < getOutputCols(); c++) {
-                    int max_i = lastMaxRow.get(l)[r][c];
-                    int max_j = lastMaxCol.get(l)[r][c];
+            for (int k = 0; k < outPlane; k++) {
+                int maxIndex = lastMaxIndex[p * outPlane + k];
 
-                    if (max_i != -1) {
-                        error[max_i][max_j] += array[r][c];
-                    }
+                if (maxIndex == -1) {
+                    continue;
                 }
-            }
 
-            dXdL.add(error);
-            l++;
+                if (precision == Precision.FLOAT) {
+                    dXdL.floatData()[errorOffset + maxIndex] += dLdO.floatData()[gradientOffset + k];
+                } else {
+                    dXdL.data()[errorOffset + maxIndex] += dLdO.data()[gradientOffset + k];
+                }
+            }
         }
 
-        if (previousLayer != null) {
-            previousLayer.backPropagation(dXdL);
+        return dXdL;
+    }
+
+    @Override
+    public void reserve(int batchSize) {
+        int outPlane = getOutputRows() * getOutputCols();
+
+        output = reuseOrAllocate(output, precision, batchSize, inLength, getOutputRows(), getOutputCols());
+        inputError = reuseOrAllocate(inputError, precision, batchSize, inLength, inRows, inCols);
+
+        if (lastMaxIndex == null || lastMaxIndex.length != batchSize * inLength * outPlane) {
+            lastMaxIndex = new int[batchSize * inLength * outPlane];
         }
     }
 
+    @Override
+    public Layer replicate() {
+        return new MaxPoolLayer(stepSize, windowSize, inLength, inRows, inCols, precision);
+    }
+
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    public int getStepSize() {
+        return stepSize;
+    }
+
+    @Override
+    public Precision getPrecision() {
+        return precision;
+    }
+
     @Override
     public int getOutputLength() {
         return inLength;
@@ -0,0 +1,266 @@
+package network;
+
+import Layer.ConvolutionAlgorithm;
+import Layer.ConvolutionLayer;
+import Layer.FullyConnectedLayer;
+import Layer.Layer;
+import Layer.MaxPoolLayer;
+import data.Precision;
+import data.Tensor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+// Binary model file, all values little-endian:
+//   header  (32 bytes): magic, version, precision, input rows, input cols, layer count, scale factor
+//   records (48 bytes per layer): type, three shape ints, algorithm, parameter count, parameter offset, learning rate, seed
+//   blocks: each layer's parameters as one contiguous double/float array, starting on a 64-byte boundary
+public class ModelCheckpoint {
+
+    static final int MAGIC = 0x4D4E4E43;
+    static final int VERSION = 2;
+
+    private static final int HEADER_SIZE = 32;
+    private static final int RECORD_SIZE = 48;
+    private static final int BLOCK_ALIGNMENT = 64;
+
+    private static final int CONVOLUTION = 1;
+    private static final int MAX_POOL = 2;
+    private static final int FULLY_CONNECTED = 3;
+
+    // Stored precision and convolution algorithm codes; they match the ordinals earlier files were written with.
+    // The precision code is also what ParameterFrames sends in HELLO.
+    private static final int DOUBLE = 0;
+    private static final int FLOAT = 1;
+
+    private static final int DIRECT = 0;
+    private static final int IM2COL = 1;
+    private static final int WINOGRAD = 2;
+    private static final int WINOGRAD_4X4 = 3;
+    private static final int FFT = 4;
+
+    public void save(NeuralNetwork network, String path) {
+        List<Layer> layers = network.getLayers();
+        Precision precision = network.getPrecision();
+        int elementSize = precision == Precision.FLOAT ? Float.BYTES : Double.BYTES;
+
+        long[] offsets = new long[layers.size()];
+        long end = HEADER_SIZE + (long) RECORD_SIZE * layers.size();
+
+        for (int l = 0; l < layers.size(); l++) {
+            Tensor parameters = layers.get(l).getParameters();
+
+            if (parameters != null) {
+                offsets[l] = align(end);
+                end = offsets[l] + (long) parameters.size() * elementSize;
+            }
+        }
+
+        if (end > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Model too large for a single mapping: " + end + " bytes");
+        }
+
+        try (FileChannel channel = FileChannel.open(Path.of(path), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, end);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.putInt(8, precisionCode(precision));
+            buffer.putInt(12, network.getInputRows());
+            buffer.putInt(16, network.getInputCols());
+            buffer.putInt(20, layers.size());
+            buffer.putDouble(24, network.getScaleFactor());
+
+            for (int l = 0; l < layers.size(); l++) {
+                writeRecord(buffer, HEADER_SIZE + l * RECORD_SIZE, layers.get(l), offsets[l]);
+            }
+
+            for (int l = 0; l < layers.size(); l++) {
+                Tensor parameters = layers.get(l).getParameters();
+
+                if (parameters != null) {
+                    writeBlock(buffer, (int) offsets[l], parameters);
+                }
+            }
+
+            buffer.force();
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Could not write model " + path, e);
+        }
+    }
+
+    // Maps the file and rebuilds the topology through NetworkBuilder; each parameter block is bulk-copied
+    // straight from the mapping into the layer's array, and random initialization is skipped.
+    public NeuralNetwork load(String path) {
+        ByteBuffer buffer;
+
+        try (FileChannel channel = FileChannel.open(Path.of(path), StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("File not found " + path, e);
+        }
+
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IllegalArgumentException("Not a model file " + path);
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IllegalArgumentException("Unsupported model version " + buffer.getInt(4) + " in " + path);
+        }
+
+        Precision precision = precision(buffer.getInt(8), path);
+        int layerCount = buffer.getInt(20);
+        NetworkBuilder builder = new NetworkBuilder(buffer.getInt(12), buffer.getInt(16), buffer.getDouble(24), precision);
+
+        for (int l = 0; l < layerCount; l++) {
+            int record = HEADER_SIZE + l * RECORD_SIZE;
+            int type = buffer.getInt(record);
+            int first = buffer.getInt(record + 4);
+            int second = buffer.getInt(record + 8);
+            int third = buffer.getInt(record + 12);
+            int count = buffer.getInt(record + 20);
+            int offset = (int) buffer.getLong(record + 24);
+            double learningRate = buffer.getDouble(record + 32);
+            long seed = buffer.getLong(record + 40);
+
+            switch (type) {
+                case CONVOLUTION:
+                    ConvolutionAlgorithm algorithm = algorithm(buffer.getInt(record + 16), path);
+                    Tensor filters = readBlock(buffer, offset, count, precision, first, second, second);
+                    builder.addConvolutionLayer(first, second, third, learningRate, seed, algorithm, filters);
+                    break;
+                case MAX_POOL:
+                    builder.addMaxPoolLayer(first, second);
+                    break;
+                case FULLY_CONNECTED:
+                    Tensor weights = readBlock(buffer, offset, count, precision, 1, first, count / first);
+                    builder.addFullyConnectedLayer(first, learningRate, seed, weights);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown layer type " + type + " in " + path);
+            }
+        }
+
+        return builder.build();
+    }
+
+    static int precisionCode(Precision precision) {
+        return precision == Precision.FLOAT ? FLOAT : DOUBLE;
+    }
+
+    private static Precision precision(int code, String path) {
+        switch (code) {
+            case DOUBLE:
+                return Precision.DOUBLE;
+            case FLOAT:
+                return Precision.FLOAT;
+            default:
+                throw new IllegalArgumentException("Not a model file " + path + ": unknown precision " + code);
+        }
+    }
+
+    private static ConvolutionAlgorithm algorithm(int code, String path) {
+        switch (code) {
+            case DIRECT:
+                return ConvolutionAlgorithm.DIRECT;
+            case IM2COL:
+                return ConvolutionAlgorithm.IM2COL;
+            case WINOGRAD:
+                return ConvolutionAlgorithm.WINOGRAD;
+            case WINOGRAD_4X4:
+                return ConvolutionAlgorithm.WINOGRAD_4X4;
+            case FFT:
+                return ConvolutionAlgorithm.FFT;
+            default:
+                throw new IllegalArgumentException("Not a model file " + path + ": unknown convolution algorithm " + code);
+        }
+    }
+
+    // AUTO is resolved when the layer is built, so a layer never reports it.
+    private static int algorithmCode(ConvolutionAlgorithm algorithm) {
+        switch (algorithm) {
+            case DIRECT:
+                return DIRECT;
+            case IM2COL:
+                return IM2COL;
+            case WINOGRAD:
+                return WINOGRAD;
+            case WINOGRAD_4X4:
+                return WINOGRAD_4X4;
+            case FFT:
+                return FFT;
+            default:
+                throw new IllegalArgumentException("Unsupported convolution algorithm " + algorithm);
+        }
+    }
+
+    private void writeRecord(ByteBuffer buffer, int record, Layer layer, long parameterOffset) {
+        Tensor parameters = layer.getParameters();
+
+        if (layer instanceof ConvolutionLayer) {
+            ConvolutionLayer convolution = (ConvolutionLayer) layer;
+            buffer.putInt(record, CONVOLUTION);
+            buffer.putInt(record + 4, convolution.getNumFilters());
+            buffer.putInt(record + 8, convolution.getFilterSize());
+            buffer.putInt(record + 12, convolution.getStepSize());
+            buffer.putInt(record + 16, algorithmCode(convolution.getAlgorithm()));
+            buffer.putDouble(record + 32, convolution.getLearningRate());
+            buffer.putLong(record + 40, convolution.getSeed());
+        } else if (layer instanceof MaxPoolLayer) {
+            MaxPoolLayer maxPool = (MaxPoolLayer) layer;
+            buffer.putInt(record, MAX_POOL);
+            buffer.putInt(record + 4, maxPool.getWindowSize());
+            buffer.putInt(record + 8, maxPool.getStepSize());
+        } else if (layer instanceof FullyConnectedLayer) {
+            FullyConnectedLayer fullyConnected = (FullyConnectedLayer) layer;
+            buffer.putInt(record, FULLY_CONNECTED);
+            buffer.putInt(record + 4, fullyConnected.getOutputCols());
+            buffer.putDouble(record + 32, fullyConnected.getLearningRate());
+            buffer.putLong(record + 40, fullyConnected.getSeed());
+        } else {
+            throw new IllegalArgumentException("Unsupported layer type");
+        }
+
+        buffer.putInt(record + 20, parameters == null ? 0 : parameters.size());
+        buffer.putLong(record + 24, parameterOffset);
+    }
+
+    private void writeBlock(ByteBuffer buffer, int offset, Tensor parameters) {
+        ByteBuffer block = buffer.slice(offset, buffer.capacity() - offset).order(ByteOrder.LITTLE_ENDIAN);
+
+        if (parameters.isFloat()) {
+            block.asFloatBuffer().put(parameters.floatData(), parameters.offset(), parameters.size());
+        } else {
+            block.asDoubleBuffer().put(parameters.data(), parameters.offset(), parameters.size());
+        }
+    }
+
+    private Tensor readBlock(ByteBuffer buffer, int offset, int count, Precision precision, int channels, int rows, int cols) {
+        if (count != channels * rows * cols) {
+            throw new IllegalArgumentException("Parameter block holds " + count + " values, expected " + channels * rows * cols);
+        }
+
+        Tensor parameters = new Tensor(precision, 1, channels, rows, cols);
+        ByteBuffer block = buffer.slice(offset, buffer.capacity() - offset).order(ByteOrder.LITTLE_ENDIAN);
+
+        if (precision == Precision.FLOAT) {
+            block.asFloatBuffer().get(parameters.floatData(), 0, count);
+        } else {
+            block.asDoubleBuffer().get(parameters.data(), 0, count);
+        }
+
+        return parameters;
+    }
+
+    private long align(long position) {
+        return (position + BLOCK_ALIGNMENT - 1) / BLOCK_ALIGNMENT * BLOCK_ALIGNMENT;
+    }
+}
@@ -0,0 +1,67 @@
+package Layer;
+
+import data.Tensor;
+
+// Heavy-ball momentum: v = momentum * v + g, w -= learningRate * v, with g the batch-mean gradient.
+public class MomentumOptimizer implements Optimizer {
+
+    private final double momentum;
+
+    public MomentumOptimizer(double momentum) {
+        if (momentum < 0 || momentum >= 1) {
+            throw new IllegalArgumentException("Momentum must be in [0, 1): " + momentum);
+        }
+        this.momentum = momentum;
+    }
+
+    @Override
+    public State newState(Tensor parameters) {
+        return parameters.isFloat() ? new FloatState(parameters.size()) : new DoubleState(parameters.size());
+    }
+
+    private class DoubleState implements State {
+
+        private final double[] velocity;
+
+        DoubleState(int size) {
+            this.velocity = new double[size];
+        }
+
+        @Override
+        public void apply(Tensor parameters, Tensor gradients, double learningRate, int batchSize) {
+            double[] w = parameters.data();
+            double[] g = gradients.data();
+            double scale = 1.0 / batchSize;
+
+            for (int k = 0; k < w.length; k++) {
+                velocity[k] = momentum * velocity[k] + g[k] * scale;
+                w[k] -= learningRate * velocity[k];
+                g[k] = 0;
+            }
+        }
+    }
+
+    private class FloatState implements State {
+
+        private final float[] velocity;
+
+        FloatState(int size) {
+            this.velocity = new float[size];
+        }
+
+        @Override
+        public void apply(Tensor parameters, Tensor gradients, double learningRate, int batchSize) {
+            float[] w = parameters.floatData();
+            float[] g = gradients.floatData();
+            float mu = (float) momentum;
+            float rate = (float) learningRate;
+            float scale = 1f / batchSize;
+
+            for (int k = 0; k < w.length; k++) {
+                velocity[k] = mu * velocity[k] + g[k] * scale;
+                w[k] -= rate * velocity[k];
+                g[k] = 0;
+            }
+        }
+    }
+}
@@ -1,9 +1,14 @@
 package network;
 
+import Layer.ConvolutionAlgorithm;
 import Layer.ConvolutionLayer;
 import Layer.FullyConnectedLayer;
 import Layer.Layer;
 import Layer.MaxPoolLayer;
+import Layer.Optimizer;
+import Layer.SgdOptimizer;
+import data.Precision;
+import data.Tensor;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -14,30 +19,66 @@ public class NetworkBuilder {
     private int inputRows;
     private int inputCols;
     private double scaleFactor;
+    private Precision precision;
+    private Optimizer optimizer;
+    private LearningRateSchedule schedule;
     private List<Layer> layers;
+    private int frozenLayers;
 
     public NetworkBuilder(int inputRows, int inputCols, double scaleFactor) {
+        this(inputRows, inputCols, scaleFactor, Precision.DOUBLE);
+    }
+
+    public NetworkBuilder(int inputRows, int inputCols, double scaleFactor, Precision precision) {
         this.inputRows = inputRows;
         this.inputCols = inputCols;
         this.scaleFactor = scaleFactor;
+        this.precision = precision;
+        this.optimizer = new SgdOptimizer();
+        this.schedule = LearningRateSchedule.constant();
         this.layers = new ArrayList<>();
     }
 
+    public void setOptimizer(Optimizer optimizer) {
+        this.optimizer = optimizer;
+    }
+
+    public void setLearningRateSchedule(LearningRateSchedule schedule) {
+        this.schedule = schedule;
+    }
+
+    // Freezes every layer added so far; the built network trains only the layers added after this call.
+    public void freeze() {
+        frozenLayers = layers.size();
+    }
+
     public void addConvolutionLayer(int numFilters, int filterSize, int stepSize, double learningRate, long seed) {
+        addConvolutionLayer(numFilters, filterSize, stepSize, learningRate, seed, ConvolutionAlgorithm.DIRECT);
+    }
+
+    public void addConvolutionLayer(int numFilters, int filterSize, int stepSize, double learningRate, long seed, ConvolutionAlgorithm algorithm) {
+        addConvolutionLayer(numFilters, filterSize, stepSize, learningRate, seed, algorithm, null);
+    }
+
+    void addConvolutionLayer(int numFilters, int filterSize, int stepSize, double learningRate, long seed, ConvolutionAlgorithm algorithm, Tensor filters) {
         Layer previousLayer = getPreviousLayer();
-        ConvolutionLayer convolutionLayer = new ConvolutionLayer(filterSize, stepSize, getOutputLength(previousLayer), getOutputRows(previousLayer), getOutputCols(previousLayer), seed, numFilters, learningRate);
+        ConvolutionLayer convolutionLayer = new ConvolutionLayer(filterSize, stepSize, getOutputLength(previousLayer), getOutputRows(previousLayer), getOutputCols(previousLayer), seed, numFilters, learningRate, algorithm, precision, filters);
         layers.add(convolutionLayer);
     }
 
     public void addMaxPoolLayer(int windowSize, int stepSize) {
         Layer previousLayer = getPreviousLayer();
-        MaxPoolLayer maxPoolLayer = new MaxPoolLayer(stepSize, windowSize, getOutputLength(previousLayer), getOutputRows(previousLayer), getOutputCols(previousLayer));
+        MaxPoolLayer maxPoolLayer = new MaxPoolLayer(stepSize, windowSize, getOutputLength(previousLayer), getOutputRows(previousLayer), getOutputCols(previousLayer), precision);
         layers.add(maxPoolLayer);
     }
 
     public void addFullyConnectedLayer(int outputLength, double learningRate, long seed) {
+        addFullyConnectedLayer(outputLength, learningRate, seed, null);
+    }
+
+    void addFullyConnectedLayer(int outputLength, double learningRate, long seed, Tensor weights) {
         Layer previousLayer = getPreviousLayer();
-        FullyConnectedLayer fullyConnectedLayer = new MyFullyConnectedLayer(getOutputElements(previousLayer), outputLength, seed, learningRate); // Instantiate your subclass here
+        FullyConnectedLayer fullyConnectedLayer = new FullyConnectedLayer(getOutputElements(previousLayer), outputLength, seed, learningRate, precision, weights);
         layers.add(fullyConnectedLayer);
     }
 
@@ -69,54 +110,16 @@ public class NetworkBuilder {
         }
     }
 
-    public NeuralNetwork build() {
-        neuralNetwork = new NeuralNetwork(layers, scaleFactor);
-        return neuralNetwork;
+    public InferencePlan buildInferencePlan(int maxBatchSize) {
+        return build().compileInferencePlan(maxBatchSize);
     }
 
- 
-    private static class MyFullyConnectedLayer extends FullyConnectedLayer {
-
-        public MyFullyConnectedLayer(int inputLength, int outputLength, long seed, double learningRate) {
-            super(inputLength, outputLength, seed, learningRate);
-        }
-
-        @Override
-        public double[] getOutput(List<double[][]> input) {
-            return null;
-        }
-
-        @Override
-        public double[] getOutput(double[] input) {
-            return null;
-        }
-
-        @Override
-        public void backPropagation(double[] dLdO) {
-        }
-
-        @Override
-        public void backPropagation(List<double[][]> dLdO) {
-        }
-
-        @Override
-        public int getOutputLength() {
-            return 0;
-        }
-
-        @Override
-        public int getOutputRows() {
-            return 0;
-        }
-
-        @Override
-        public int getOutputCols() {
-            return 0;
-        }
-
-        @Override
-        public int getOutputElements() {
-            return 0;
-        }
+    public NeuralNetwork build() {
+        neuralNetwork = new NeuralNetwork(layers, scaleFactor, inputRows, inputCols);
+        neuralNetwork.setOptimizer(optimizer);
+        neuralNetwork.setLearningRateSchedule(schedule);
+        neuralNetwork.freezeLayers(frozenLayers);
+        neuralNetwork.reserve(1);
+        return neuralNetwork;
     }
 }
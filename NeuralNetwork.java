@@ -1,21 +1,57 @@
 package network;
 
+import data.AugmentedDataset;
+import data.Dataset;
 import data.Image;
+import data.Precision;
+import data.Tensor;
+import Layer.InferenceContext;
 import Layer.Layer;
+import Layer.Optimizer;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class NeuralNetwork {
 
+    private static final int INFERENCE_BATCH = 64;
+
     private List<Layer> layers;
     private double scaleFactor;
+    private int inputRows;
+    private int inputCols;
+    private Tensor inputBuffer;
+    private Tensor errorBuffer;
+    private Updates updates = new Updates();
+    private Instrumentation instrumentation;
+    private int epoch;
+    private int frozenLayers;
+    private FeatureCache featureCache;
+    private InferenceContext featureContext;
+    private Tensor featureBuffer;
 
-    public NeuralNetwork(List<Layer> layers, double scaleFactor) {
+    public NeuralNetwork(List<Layer> layers, double scaleFactor, int inputRows, int inputCols) {
         this.layers = layers;
         this.scaleFactor = scaleFactor;
+        this.inputRows = inputRows;
+        this.inputCols = inputCols;
+        this.instrumentation = new Instrumentation(layerNames());
         linkLayers();
     }
 
+    private String[] layerNames() {
+        String[] names = new String[layers.size()];
+
+        for (int i = 0; i < names.length; i++) {
+            names[i] = layers.get(i).getClass().getSimpleName();
+        }
+
+        return names;
+    }
+
     private void linkLayers() {
         if (layers.size() <= 1) {
             return;
@@ -30,20 +66,122 @@ public class NeuralNetwork {
         }
     }
 
+    public NeuralNetwork replicate() {
+        List<Layer> replicaLayers = new ArrayList<>();
+
+        for (Layer layer : layers) {
+            replicaLayers.add(layer.replicate());
+        }
+
+        NeuralNetwork replica = new NeuralNetwork(replicaLayers, scaleFactor, inputRows, inputCols);
+        replica.instrumentation = instrumentation;
+        replica.updates = updates;
+        replica.frozenLayers = frozenLayers;
+        return replica;
+    }
+
+    // Listeners are shared with replicas, so per-layer callbacks may arrive from several threads.
+    public void addTrainingListener(TrainingListener listener) {
+        instrumentation.add(listener);
+    }
+
+    public void removeTrainingListener(TrainingListener listener) {
+        instrumentation.remove(listener);
+    }
+
+    // Gives every layer a fresh state of this optimizer; moments from a previous optimizer are discarded.
+    public void setOptimizer(Optimizer optimizer) {
+        for (Layer layer : layers) {
+            layer.setOptimizer(optimizer);
+        }
+    }
+
+    // The schedule is evaluated once per update; the update count restarts at zero. Replicas share the schedule
+    // and the count, so updates from every thread advance it.
+    public void setLearningRateSchedule(LearningRateSchedule schedule) {
+        updates.schedule = schedule;
+        updates.step.set(0);
+    }
+
+    // Stops training the first count layers: backward passes end above them and their parameters are no longer
+    // updated. Changing the count invalidates the feature cache.
+    public void freezeLayers(int count) {
+        if (count < 0 || count > layers.size()) {
+            throw new IllegalArgumentException("Cannot freeze " + count + " of " + layers.size() + " layers");
+        }
+
+        if (count != frozenLayers && featureCache != null) {
+            featureCache.clear();
+        }
+        frozenLayers = count;
+    }
+
+    public int getFrozenLayers() {
+        return frozenLayers;
+    }
+
+    // With frozen layers, training reads the last frozen layer's output for each image from the cache and only
+    // runs the layers above it; an image goes through the frozen layers once, the first time it is seen, as long
+    // as the cache has room. Pass null to go back to running every layer.
+    public void setFeatureCache(FeatureCache cache) {
+        if (cache != null) {
+            cache.clear();
+        }
+        featureCache = cache;
+    }
+
+    // Preallocates the input, activation and error buffers for batches of this size, so training at that
+    // batch size allocates nothing per batch. Other batch sizes resize the buffers on first use.
+    public void reserve(int batchSize) {
+        inputBuffer = new Tensor(getPrecision(), batchSize, 1, inputRows, inputCols);
+
+        for (Layer layer : layers) {
+            layer.reserve(batchSize);
+        }
+    }
+
+    List<Layer> getLayers() {
+        return layers;
+    }
+
+    // Compiles the current layers into a flat plan with buffers preallocated for up to maxBatchSize images.
+    // The plan shares this network's parameters, so later training is visible to it.
+    public InferencePlan compileInferencePlan(int maxBatchSize) {
+        return new InferencePlan(layers, scaleFactor, inputRows, inputCols, maxBatchSize);
+    }
+
+    double getScaleFactor() {
+        return scaleFactor;
+    }
+
+    int getInputRows() {
+        return inputRows;
+    }
+
+    int getInputCols() {
+        return inputCols;
+    }
+
     public double[] calculateErrors(double[] networkOutput, int correctAnswer) {
         int numClasses = networkOutput.length;
-        double[] expected = new double[numClasses];
-        expected[correctAnswer] = 1;
-        return data.MatrixUtility.add(networkOutput, data.MatrixUtility.multiply(expected, -1));
+        double[] errors = new double[numClasses];
+        errors[correctAnswer] = -1;
+        return data.MatrixUtility.addInPlace(errors, networkOutput);
+    }
+
+    private int findMaxIndex(Tensor output) {
+        return findMaxIndex(output, output.offset(), output.size());
     }
 
-    private int findMaxIndex(double[] input) {
+    static int findMaxIndex(Tensor output, int from, int length) {
         double max = 0;
         int index = 0;
 
-        for (int i = 0; i < input.length; i++) {
-            if (input[i] >= max) {
-                max = input[i];
+        for (int i = 0; i < length; i++) {
+            double value = output.get(from + i);
+
+            if (value >= max) {
+                max = value;
                 index = i;
             }
         }
@@ -51,32 +189,310 @@ public class NeuralNetwork {
         return index;
     }
 
+    // Normalizes raw pixels by scaleFactor into a reused buffer; the buffer is reallocated only when the batch shape changes.
+    private Tensor toInput(List<Image> images, Tensor buffer) {
+        for (int b = 0; b < images.size(); b++) {
+            if (buffer.isFloat()) {
+                images.get(b).copyTo(buffer.floatData(), buffer.index(b, 0, 0, 0), scaleFactor);
+            } else {
+                images.get(b).copyTo(buffer.data(), buffer.index(b, 0, 0, 0), scaleFactor);
+            }
+        }
+
+        return buffer;
+    }
+
+    Tensor toTrainingInput(List<Image> images) {
+        Image first = images.get(0);
+
+        if (inputBuffer == null || !inputBuffer.hasShape(images.size(), 1, first.getRows(), first.getCols())) {
+            inputBuffer = new Tensor(getPrecision(), images.size(), 1, first.getRows(), first.getCols());
+        }
+
+        return toInput(images, inputBuffer);
+    }
+
+    Tensor toInferenceInput(List<Image> images, InferenceContext context) {
+        Image first = images.get(0);
+        return toInput(images, context.input(getPrecision(), images.size(), 1, first.getRows(), first.getCols()));
+    }
+
+    Tensor calculateErrors(Tensor networkOutput, List<Image> images) {
+        if (errorBuffer == null || errorBuffer.getPrecision() != networkOutput.getPrecision()
+                || !errorBuffer.hasShape(networkOutput.getBatch(), networkOutput.getChannels(), networkOutput.getRows(), networkOutput.getCols())) {
+            errorBuffer = new Tensor(networkOutput.getPrecision(), networkOutput.getBatch(), networkOutput.getChannels(), networkOutput.getRows(), networkOutput.getCols());
+        }
+
+        Tensor errors = errorBuffer;
+        int numClasses = networkOutput.sampleSize();
+
+        for (int b = 0; b < images.size(); b++) {
+            for (int k = 0; k < numClasses; k++) {
+                double expected = images.get(b).getLabel() == k ? 1 : 0;
+                errors.set(b * numClasses + k, networkOutput.get(networkOutput.offset() + b * numClasses + k) - expected);
+            }
+        }
+
+        return errors;
+    }
+
+    public Precision getPrecision() {
+        return layers.get(0).getPrecision();
+    }
+
+    public InferenceContext newInferenceContext() {
+        return new InferenceContext(layers.size());
+    }
+
+    public Tensor infer(Tensor input, InferenceContext context) {
+        boolean instrumented = instrumentation.enabled();
+        Tensor activations = input;
+
+        for (int i = 0; i < layers.size(); i++) {
+            if (!instrumented) {
+                activations = layers.get(i).infer(activations, context, i);
+                continue;
+            }
+
+            LayerEvent event = instrumentation.beginLayer();
+            long start = System.nanoTime();
+            activations = layers.get(i).infer(activations, context, i);
+            instrumentation.endLayer(event, i, TrainingListener.Phase.INFERENCE, input.getBatch(), start);
+        }
+
+        return activations;
+    }
+
     public int makePrediction(Image image) {
-        List<double[][]> inputList = List.of();
-        double[] output = layers.get(0).getOutput(inputList);
+        return makePrediction(image, newInferenceContext());
+    }
+
+    public int makePrediction(Image image, InferenceContext context) {
+        Tensor output = infer(toInferenceInput(List.of(image), context), context);
         return findMaxIndex(output);
     }
 
+    // Predicted class for each image, computed as one batched forward pass with the context's buffers.
+    public int[] makePredictions(List<Image> images, InferenceContext context) {
+        Tensor output = infer(toInferenceInput(images, context), context);
+        int[] predictions = new int[images.size()];
+
+        for (int b = 0; b < predictions.length; b++) {
+            predictions[b] = findMaxIndex(output.sample(b));
+        }
+
+        return predictions;
+    }
+
     public float assessAccuracy(List<Image> images) {
+        return (float) countCorrect(images, newInferenceContext()) / images.size();
+    }
+
+    public float assessAccuracy(List<Image> images, ForkJoinPool pool) {
+        return (float) pool.invoke(new AccuracyTask(images)) / images.size();
+    }
+
+    private int countCorrect(List<Image> images, InferenceContext context) {
         int correct = 0;
 
-        for (Image img : images) {
-            int prediction = makePrediction(img);
+        for (int start = 0; start < images.size(); start += INFERENCE_BATCH) {
+            List<Image> batch = images.subList(start, Math.min(start + INFERENCE_BATCH, images.size()));
+            Tensor output = infer(toInferenceInput(batch, context), context);
 
-            if (prediction == img.getLabel()) {
-                correct++;
+            for (int b = 0; b < batch.size(); b++) {
+                if (findMaxIndex(output.sample(b)) == batch.get(b).getLabel()) {
+                    correct++;
+                }
             }
         }
 
-        return (float) correct / images.size();
+        return correct;
+    }
+
+    private class AccuracyTask extends RecursiveTask<Integer> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<Image> images;
+
+        AccuracyTask(List<Image> images) {
+            this.images = images;
+        }
+
+        @Override
+        protected Integer compute() {
+            if (images.size() <= 4 * INFERENCE_BATCH) {
+                return countCorrect(images, newInferenceContext());
+            }
+
+            int middle = images.size() / 2;
+            AccuracyTask left = new AccuracyTask(images.subList(0, middle));
+            AccuracyTask right = new AccuracyTask(images.subList(middle, images.size()));
+
+            left.fork();
+            return right.compute() + left.join();
+        }
     }
 
     public void conductTraining(List<Image> images) {
-        for (Image img : images) {
-            List<double[][]> inputList = List.of();
-            double[] output = layers.get(0).getOutput(inputList);
-            double[] dldO = calculateErrors(output, img.getLabel());
-            layers.get(layers.size() - 1).backPropagation(dldO);
+        conductTraining(images, 1);
+    }
+
+    public void conductTraining(List<Image> images, int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+
+        boolean instrumented = instrumentation.enabled();
+        EpochEvent event = instrumented ? instrumentation.beginEpoch() : null;
+        long epochStart = instrumented ? System.nanoTime() : 0;
+
+        for (int start = 0; start < images.size(); start += batchSize) {
+            trainStep(images.subList(start, Math.min(start + batchSize, images.size())));
+        }
+
+        if (instrumented) {
+            instrumentation.endEpoch(event, epoch, images.size(), epochStart);
+        }
+        epoch++;
+    }
+
+    public void conductTraining(Dataset dataset, int batchSize) {
+        if (featureCache != null && frozenLayers > 0 && dataset instanceof AugmentedDataset) {
+            throw new IllegalArgumentException("Augmented images change every epoch and cannot use the feature cache");
+        }
+
+        boolean instrumented = instrumentation.enabled();
+        EpochEvent event = instrumented ? instrumentation.beginEpoch() : null;
+        long epochStart = instrumented ? System.nanoTime() : 0;
+        int images = 0;
+
+        try (Dataset.BatchIterator batches = dataset.batches(batchSize)) {
+            while (batches.hasNext()) {
+                List<Image> batch = batches.next();
+
+                trainStep(batch);
+                images += batch.size();
+            }
+        }
+
+        if (instrumented) {
+            instrumentation.endEpoch(event, epoch, images, epochStart);
+        }
+        epoch++;
+    }
+
+    private void trainStep(List<Image> batch) {
+        if (!instrumentation.enabled()) {
+            accumulateGradients(batch);
+            applyGradients(batch.size());
+            return;
         }
+
+        TrainingStepEvent event = instrumentation.beginStep();
+        long start = System.nanoTime();
+        long allocated = instrumentation.allocatedBytes();
+
+        accumulateGradients(batch);
+        applyGradients(batch.size());
+
+        instrumentation.endStep(event, batch.size(), start, allocated);
+    }
+
+    // Runs the layers in a flat loop rather than through the getOutput/backPropagation recursion so each
+    // layer can be timed on its own.
+    void accumulateGradients(List<Image> batch) {
+        boolean instrumented = instrumentation.enabled();
+        boolean cached = featureCache != null && frozenLayers > 0;
+        Tensor activations = cached ? cachedFeatures(batch) : toTrainingInput(batch);
+
+        for (int i = cached ? frozenLayers : 0; i < layers.size(); i++) {
+            if (!instrumented) {
+                activations = layers.get(i).forward(activations);
+                continue;
+            }
+
+            LayerEvent event = instrumentation.beginLayer();
+            long start = System.nanoTime();
+            activations = layers.get(i).forward(activations);
+            instrumentation.endLayer(event, i, TrainingListener.Phase.FORWARD, batch.size(), start);
+        }
+
+        Tensor error = calculateErrors(activations, batch);
+
+        for (int i = layers.size() - 1; i >= frozenLayers; i--) {
+            if (!instrumented) {
+                error = layers.get(i).backward(error);
+                continue;
+            }
+
+            LayerEvent event = instrumentation.beginLayer();
+            long start = System.nanoTime();
+            error = layers.get(i).backward(error);
+            instrumentation.endLayer(event, i, TrainingListener.Phase.BACKWARD, batch.size(), start);
+        }
+    }
+
+    void applyGradients(int batchSize) {
+        double factor = updates.schedule.factor(updates.step.getAndIncrement());
+
+        for (int i = frozenLayers; i < layers.size(); i++) {
+            layers.get(i).applyGradients(batchSize, factor);
+        }
+    }
+
+    // Output of the last frozen layer for each image of the batch. Cache misses run through the frozen layers'
+    // inference path together, are copied into the batch and are added to the cache while it has room.
+    private Tensor cachedFeatures(List<Image> batch) {
+        Layer last = layers.get(frozenLayers - 1);
+        int length = last.getOutputElements();
+        List<Image> misses = new ArrayList<>();
+        List<Integer> missIndices = new ArrayList<>();
+
+        if (featureBuffer == null || !featureBuffer.hasShape(batch.size(), last.getOutputLength(), last.getOutputRows(), last.getOutputCols())) {
+            featureBuffer = new Tensor(getPrecision(), batch.size(), last.getOutputLength(), last.getOutputRows(), last.getOutputCols());
+        }
+
+        for (int b = 0; b < batch.size(); b++) {
+            if (!featureCache.read(batch.get(b), featureBuffer, featureBuffer.index(b, 0, 0, 0))) {
+                misses.add(batch.get(b));
+                missIndices.add(b);
+            }
+        }
+
+        if (misses.isEmpty()) {
+            return featureBuffer;
+        }
+
+        if (featureContext == null) {
+            featureContext = newInferenceContext();
+        }
+
+        Tensor features = toInferenceInput(misses, featureContext);
+
+        for (int i = 0; i < frozenLayers; i++) {
+            features = layers.get(i).infer(features, featureContext, i);
+        }
+
+        for (int m = 0; m < misses.size(); m++) {
+            int from = features.offset() + m * length;
+            int to = featureBuffer.index(missIndices.get(m), 0, 0, 0);
+
+            if (features.isFloat()) {
+                System.arraycopy(features.floatData(), from, featureBuffer.floatData(), to, length);
+            } else {
+                System.arraycopy(features.data(), from, featureBuffer.data(), to, length);
+            }
+            featureCache.write(misses.get(m), features, from, length);
+        }
+
+        return featureBuffer;
+    }
+
+    // Learning-rate schedule and update count shared by a network and its replicas.
+    private static final class Updates {
+
+        volatile LearningRateSchedule schedule = LearningRateSchedule.constant();
+        final AtomicInteger step = new AtomicInteger();
     }
 }
@@ -0,0 +1,16 @@
+package Layer;
+
+import data.Tensor;
+
+// Turns accumulated gradients into parameter updates. The optimizer itself is configuration; the per-parameter
+// moment buffers live in the State it creates, as flat arrays of the parameters' precision.
+public interface Optimizer {
+
+    State newState(Tensor parameters);
+
+    interface State {
+
+        // gradients hold the sum over batchSize samples; they are cleared after the update.
+        void apply(Tensor parameters, Tensor gradients, double learningRate, int batchSize);
+    }
+}
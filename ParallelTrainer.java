@@ -0,0 +1,151 @@
+package network;
+
+import data.Dataset;
+import data.Image;
+import data.Tensor;
+import Layer.Layer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class ParallelTrainer implements AutoCloseable {
+
+    private final NeuralNetwork network;
+    private final List<NeuralNetwork> replicas;
+    private final ExecutorService executor;
+
+    // Replica 0 is the network itself; the others share its parameter arrays, and the
+    // reduced gradients end up in replica 0 before the single shared update.
+    public ParallelTrainer(NeuralNetwork network, int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Thread count must be positive: " + threads);
+        }
+
+        this.network = network;
+        this.replicas = new ArrayList<>();
+        this.replicas.add(network);
+
+        for (int i = 1; i < threads; i++) {
+            replicas.add(network.replicate());
+        }
+
+        this.executor = Executors.newFixedThreadPool(threads);
+    }
+
+    public void conductTraining(List<Image> images, int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+
+        for (int start = 0; start < images.size(); start += batchSize) {
+            trainBatch(images.subList(start, Math.min(start + batchSize, images.size())));
+        }
+    }
+
+    public void conductTraining(Dataset dataset, int batchSize) {
+        try (Dataset.BatchIterator batches = dataset.batches(batchSize)) {
+            while (batches.hasNext()) {
+                trainBatch(batches.next());
+            }
+        }
+    }
+
+    private void trainBatch(List<Image> batch) {
+        int active = computeShards(batch);
+        reduceGradients(active);
+        network.applyGradients(batch.size());
+    }
+
+    private int computeShards(List<Image> batch) {
+        int shardSize = (batch.size() + replicas.size() - 1) / replicas.size();
+        List<Callable<Void>> tasks = new ArrayList<>();
+
+        for (int r = 0; r * shardSize < batch.size(); r++) {
+            NeuralNetwork replica = replicas.get(r);
+            List<Image> shard = batch.subList(r * shardSize, Math.min((r + 1) * shardSize, batch.size()));
+
+            tasks.add(() -> {
+                replica.accumulateGradients(shard);
+                return null;
+            });
+        }
+
+        invokeAll(tasks);
+        return tasks.size();
+    }
+
+    // Pairwise tree reduction: in round k replica i absorbs replica i + 2^k, so the sum lands in
+    // replica 0 after log2(active) rounds and every pair within a round is reduced in parallel.
+    private void reduceGradients(int active) {
+        for (int stride = 1; stride < active; stride *= 2) {
+            List<Callable<Void>> tasks = new ArrayList<>();
+
+            for (int i = 0; i + stride < active; i += 2 * stride) {
+                NeuralNetwork target = replicas.get(i);
+                NeuralNetwork source = replicas.get(i + stride);
+
+                tasks.add(() -> {
+                    addGradients(target, source);
+                    return null;
+                });
+            }
+
+            invokeAll(tasks);
+        }
+    }
+
+    private void addGradients(NeuralNetwork target, NeuralNetwork source) {
+        List<Layer> targetLayers = target.getLayers();
+        List<Layer> sourceLayers = source.getLayers();
+
+        for (int l = 0; l < targetLayers.size(); l++) {
+            Tensor into = targetLayers.get(l).getGradients();
+            Tensor from = sourceLayers.get(l).getGradients();
+
+            if (into == null) {
+                continue;
+            }
+
+            if (into.isFloat()) {
+                float[] sum = into.floatData();
+                float[] part = from.floatData();
+
+                for (int k = 0; k < sum.length; k++) {
+                    sum[k] += part[k];
+                    part[k] = 0;
+                }
+            } else {
+                double[] sum = into.data();
+                double[] part = from.data();
+
+                for (int k = 0; k < sum.length; k++) {
+                    sum[k] += part[k];
+                    part[k] = 0;
+                }
+            }
+        }
+    }
+
+    private void invokeAll(List<Callable<Void>> tasks) {
+        try {
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Training interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Training worker failed", e.getCause());
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,241 @@
+package network;
+
+import data.Tensor;
+import Layer.Layer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+// Binary framing shared by ParameterServer and ParameterWorker. A frame is a 4-byte payload length followed by
+// the payload, whose first byte is the frame type:
+//
+//   HELLO   worker -> server   long parameter count, byte precision code (as in ModelCheckpoint)
+//   PARAMS  server -> worker   int version, every parameter tensor in layer order, in the network's precision
+//   PUSH    worker -> server   int batch size, byte encoding, every gradient tensor in layer order
+//   DONE    worker -> server   no payload; the worker leaves
+//   ERROR   server -> worker   UTF-8 message; the server closes the connection
+//
+// RAW gradients are sent in the network's precision. INT8 gradients are sent per tensor as a float scale
+// followed by one signed byte per element; the worker keeps the rounding error and adds it to its next push.
+final class ParameterFrames implements AutoCloseable {
+
+    static final byte HELLO = 1;
+    static final byte PARAMS = 2;
+    static final byte PUSH = 3;
+    static final byte DONE = 4;
+    static final byte ERROR = 5;
+
+    static final byte RAW = 0;
+    static final byte INT8 = 1;
+
+    private static final int LEVELS = 127;
+
+    private final Socket socket;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+    private ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+
+    ParameterFrames(Socket socket) throws IOException {
+        this.socket = socket;
+        this.socket.setTcpNoDelay(true);
+        this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16));
+        this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+    }
+
+    // Clears the frame buffer for a frame of the given type with room for at least capacity payload bytes.
+    ByteBuffer begin(byte type, long capacity) {
+        ensure(capacity + 1);
+        buffer.clear();
+        buffer.put(type);
+        return buffer;
+    }
+
+    void send() throws IOException {
+        out.writeInt(buffer.position());
+        out.write(buffer.array(), 0, buffer.position());
+        out.flush();
+    }
+
+    // Reads the next frame; the returned buffer is positioned just after the type byte, which is returned
+    // by type().
+    ByteBuffer receive() throws IOException {
+        int length = in.readInt();
+
+        ensure(length);
+        in.readFully(buffer.array(), 0, length);
+        buffer.clear();
+        buffer.limit(length);
+        buffer.position(1);
+        return buffer;
+    }
+
+    byte type() {
+        return buffer.get(0);
+    }
+
+    private void ensure(long capacity) {
+        if (capacity > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Frame too large: " + capacity + " bytes");
+        }
+        if (buffer.capacity() < capacity) {
+            buffer = ByteBuffer.allocate((int) Math.max(capacity, 2L * buffer.capacity()));
+        }
+    }
+
+    static List<Tensor> parameters(NeuralNetwork network) {
+        List<Tensor> tensors = new ArrayList<>();
+
+        for (Layer layer : network.getLayers()) {
+            if (layer.getParameters() != null) {
+                tensors.add(layer.getParameters());
+            }
+        }
+
+        return tensors;
+    }
+
+    static List<Tensor> gradients(NeuralNetwork network) {
+        List<Tensor> tensors = new ArrayList<>();
+
+        for (Layer layer : network.getLayers()) {
+            if (layer.getGradients() != null) {
+                tensors.add(layer.getGradients());
+            }
+        }
+
+        return tensors;
+    }
+
+    static long count(List<Tensor> tensors) {
+        long count = 0;
+
+        for (Tensor tensor : tensors) {
+            count += tensor.size();
+        }
+
+        return count;
+    }
+
+    static long rawBytes(List<Tensor> tensors) {
+        return tensors.isEmpty() ? 0 : count(tensors) * (tensors.get(0).isFloat() ? Float.BYTES : Double.BYTES);
+    }
+
+    static long int8Bytes(List<Tensor> tensors) {
+        return count(tensors) + (long) tensors.size() * Float.BYTES;
+    }
+
+    static void putRaw(ByteBuffer buffer, List<Tensor> tensors) {
+        for (Tensor tensor : tensors) {
+            if (tensor.isFloat()) {
+                buffer.asFloatBuffer().put(tensor.floatData(), tensor.offset(), tensor.size());
+                buffer.position(buffer.position() + tensor.size() * Float.BYTES);
+            } else {
+                buffer.asDoubleBuffer().put(tensor.data(), tensor.offset(), tensor.size());
+                buffer.position(buffer.position() + tensor.size() * Double.BYTES);
+            }
+        }
+    }
+
+    // Overwrites the tensors with the values in the buffer.
+    static void getRaw(ByteBuffer buffer, List<Tensor> tensors) {
+        for (Tensor tensor : tensors) {
+            if (tensor.isFloat()) {
+                buffer.asFloatBuffer().get(tensor.floatData(), tensor.offset(), tensor.size());
+                buffer.position(buffer.position() + tensor.size() * Float.BYTES);
+            } else {
+                buffer.asDoubleBuffer().get(tensor.data(), tensor.offset(), tensor.size());
+                buffer.position(buffer.position() + tensor.size() * Double.BYTES);
+            }
+        }
+    }
+
+    // Adds the values in the buffer to the tensors.
+    static void addRaw(ByteBuffer buffer, List<Tensor> tensors) {
+        for (Tensor tensor : tensors) {
+            int offset = tensor.offset();
+
+            if (tensor.isFloat()) {
+                FloatBuffer values = buffer.asFloatBuffer();
+                float[] data = tensor.floatData();
+
+                for (int k = 0; k < tensor.size(); k++) {
+                    data[offset + k] += values.get(k);
+                }
+                buffer.position(buffer.position() + tensor.size() * Float.BYTES);
+            } else {
+                DoubleBuffer values = buffer.asDoubleBuffer();
+                double[] data = tensor.data();
+
+                for (int k = 0; k < tensor.size(); k++) {
+                    data[offset + k] += values.get(k);
+                }
+                buffer.position(buffer.position() + tensor.size() * Double.BYTES);
+            }
+        }
+    }
+
+    // Quantizes tensor + residual to int8 with a symmetric per-tensor scale and leaves the rounding error in
+    // residual, so it is sent with a later push instead of being lost.
+    static void putInt8(ByteBuffer buffer, List<Tensor> tensors, List<Tensor> residuals) {
+        for (int t = 0; t < tensors.size(); t++) {
+            Tensor tensor = tensors.get(t);
+            Tensor residual = residuals.get(t);
+            double maxAbs = 0;
+
+            for (int k = 0; k < tensor.size(); k++) {
+                double value = tensor.get(tensor.offset() + k) + residual.get(k);
+                residual.set(k, value);
+                maxAbs = Math.max(maxAbs, Math.abs(value));
+            }
+
+            float scale = maxAbs == 0 ? 1f : (float) (maxAbs / LEVELS);
+            buffer.putFloat(scale);
+
+            for (int k = 0; k < tensor.size(); k++) {
+                double value = residual.get(k);
+                int level = (int) Math.max(-LEVELS, Math.min(LEVELS, Math.round(value / scale)));
+
+                buffer.put((byte) level);
+                residual.set(k, value - level * scale);
+            }
+        }
+    }
+
+    static void addInt8(ByteBuffer buffer, List<Tensor> tensors) {
+        for (Tensor tensor : tensors) {
+            float scale = buffer.getFloat();
+            int offset = tensor.offset();
+
+            if (tensor.isFloat()) {
+                float[] data = tensor.floatData();
+
+                for (int k = 0; k < tensor.size(); k++) {
+                    data[offset + k] += buffer.get() * scale;
+                }
+            } else {
+                double[] data = tensor.data();
+
+                for (int k = 0; k < tensor.size(); k++) {
+                    data[offset + k] += buffer.get() * (double) scale;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
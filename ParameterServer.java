@@ -0,0 +1,318 @@
+package network;
+
+import data.Tensor;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Coordinator for multi-process training: holds the network's parameters (convolution filters and dense
+// weights) and serves a fixed number of ParameterWorkers over TCP on localhost, one handler thread per worker.
+// Workers pull parameters, train a batch on their own data and push the gradients; see ParameterFrames for the
+// wire format. No worker is answered until all of them have connected.
+//
+//   SYNCHRONOUS        gradients of one push per active worker are summed and applied as a single update,
+//                      the same as one sequential step on the union of the batches; every worker then pulls
+//                      the same version.
+//   BOUNDED_STALENESS  every push is applied on arrival, scaled down by how many updates it missed, and a
+//                      worker is only answered once it is at most staleness pushes ahead of the slowest active
+//                      worker.
+public class ParameterServer implements AutoCloseable {
+
+    public enum Mode { SYNCHRONOUS, BOUNDED_STALENESS }
+
+    private final NeuralNetwork network;
+    private final List<Tensor> parameters;
+    private final List<Tensor> gradients;
+    private final int workers;
+    private final Mode mode;
+    private final int staleness;
+    private final ServerSocket serverSocket;
+    private final Thread acceptor;
+    private final List<ParameterFrames> connections = new ArrayList<>();
+
+    // Guarded by this.
+    private final Map<ParameterFrames, Integer> clocks = new HashMap<>();
+    private final Map<ParameterFrames, Integer> pulledVersions = new HashMap<>();
+    private int joined;
+    private int finished;
+    private int version;
+    private int pendingPushes;
+    private int pendingImages;
+    private boolean running = true;
+
+    public ParameterServer(NeuralNetwork network, int port, int workers, Mode mode, int staleness) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("Worker count must be positive: " + workers);
+        }
+        if (staleness < 0) {
+            throw new IllegalArgumentException("Staleness must not be negative: " + staleness);
+        }
+
+        this.network = network;
+        this.parameters = ParameterFrames.parameters(network);
+        this.gradients = ParameterFrames.gradients(network);
+        this.workers = workers;
+        this.mode = mode;
+        this.staleness = staleness;
+
+        try {
+            this.serverSocket = new ServerSocket();
+            this.serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Could not bind port " + port, e);
+        }
+
+        this.acceptor = new Thread(this::accept, "parameter-server-accept");
+        this.acceptor.setDaemon(true);
+    }
+
+    public ParameterServer start() {
+        acceptor.start();
+        return this;
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public synchronized int getVersion() {
+        return version;
+    }
+
+    private void accept() {
+        for (int i = 0; i < workers; i++) {
+            try {
+                ParameterFrames connection = new ParameterFrames(serverSocket.accept());
+                Thread handler = new Thread(() -> serve(connection), "parameter-server-worker");
+
+                synchronized (this) {
+                    connections.add(connection);
+                }
+                handler.setDaemon(true);
+                handler.start();
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    // A worker that disconnects without DONE, or sends a malformed frame, is treated as having left, so the others
+    // are not held up.
+    private void serve(ParameterFrames connection) {
+        try (connection) {
+            if (!join(connection)) {
+                return;
+            }
+
+            while (true) {
+                ByteBuffer frame = connection.receive();
+
+                if (connection.type() == ParameterFrames.DONE) {
+                    return;
+                }
+
+                checkPush(connection, frame);
+                push(connection, frame);
+                connection.send();
+            }
+        } catch (IOException | RuntimeException e) {
+            // Connection lost, malformed frame or server closed.
+        } finally {
+            leave(connection);
+        }
+    }
+
+    // Every worker counts as joined exactly once, even if its HELLO is rejected, truncated or never arrives, so
+    // the others are not left waiting for it.
+    private boolean join(ParameterFrames connection) throws IOException {
+        boolean accepted = false;
+
+        try {
+            ByteBuffer frame = connection.receive();
+
+            accepted = connection.type() == ParameterFrames.HELLO
+                    && frame.remaining() == Long.BYTES + 1
+                    && frame.getLong() == ParameterFrames.count(parameters)
+                    && frame.get() == ModelCheckpoint.precisionCode(network.getPrecision());
+        } finally {
+            synchronized (this) {
+                if (accepted) {
+                    clocks.put(connection, 0);
+                }
+                joined++;
+                notifyAll();
+            }
+        }
+
+        if (!accepted) {
+            String message = "Expected HELLO for " + ParameterFrames.count(parameters) + " " + network.getPrecision() + " parameters";
+            byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+
+            connection.begin(ParameterFrames.ERROR, bytes.length).put(bytes);
+            connection.send();
+            return false;
+        }
+
+        synchronized (this) {
+            while (joined < workers) {
+                await();
+            }
+
+            putParameters(connection);
+        }
+
+        connection.send();
+        return true;
+    }
+
+    // Checks the type, encoding and exact length of a PUSH before any of it is added to the shared gradients, so
+    // a truncated or stray frame drops the worker without leaving a partial sum behind.
+    private void checkPush(ParameterFrames connection, ByteBuffer frame) {
+        if (connection.type() != ParameterFrames.PUSH || frame.remaining() < Integer.BYTES + 1) {
+            throw new IllegalArgumentException("Expected PUSH frame of type " + ParameterFrames.PUSH + ", got type " + connection.type());
+        }
+
+        int batchSize = frame.getInt(frame.position());
+        byte encoding = frame.get(frame.position() + Integer.BYTES);
+        long payload;
+
+        if (encoding == ParameterFrames.INT8) {
+            payload = ParameterFrames.int8Bytes(gradients);
+        } else if (encoding == ParameterFrames.RAW) {
+            payload = ParameterFrames.rawBytes(gradients);
+        } else {
+            throw new IllegalArgumentException("Unknown gradient encoding " + encoding);
+        }
+
+        if (batchSize < 1 || frame.remaining() != Integer.BYTES + 1 + payload) {
+            throw new IllegalArgumentException("Malformed PUSH: batch size " + batchSize + ", " + frame.remaining() + " bytes");
+        }
+    }
+
+    private synchronized void push(ParameterFrames connection, ByteBuffer frame) {
+        int batchSize = frame.getInt();
+        byte encoding = frame.get();
+
+        if (encoding == ParameterFrames.INT8) {
+            ParameterFrames.addInt8(frame, gradients);
+        } else {
+            ParameterFrames.addRaw(frame, gradients);
+        }
+
+        if (mode == Mode.SYNCHRONOUS) {
+            int round = version;
+
+            pendingPushes++;
+            pendingImages += batchSize;
+            completeRoundIfReady();
+
+            while (version == round) {
+                await();
+            }
+        } else {
+            // Staleness-aware step: a gradient computed on parameters that have since been updated delay times
+            // is applied with 1 / (1 + delay) of the learning rate, which keeps many workers from diverging.
+            int delay = version - pulledVersions.get(connection);
+
+            network.applyGradients(batchSize * (1 + delay));
+            version++;
+            clocks.merge(connection, 1, Integer::sum);
+            notifyAll();
+
+            while (clocks.get(connection) - slowestClock() > staleness) {
+                await();
+            }
+        }
+
+        putParameters(connection);
+    }
+
+    private void completeRoundIfReady() {
+        if (pendingPushes > 0 && pendingPushes >= clocks.size()) {
+            network.applyGradients(pendingImages);
+            version++;
+            pendingPushes = 0;
+            pendingImages = 0;
+            notifyAll();
+        }
+    }
+
+    private int slowestClock() {
+        int slowest = Integer.MAX_VALUE;
+
+        for (int clock : clocks.values()) {
+            slowest = Math.min(slowest, clock);
+        }
+
+        return slowest;
+    }
+
+    private synchronized void leave(ParameterFrames connection) {
+        clocks.remove(connection);
+        pulledVersions.remove(connection);
+        finished++;
+
+        if (mode == Mode.SYNCHRONOUS) {
+            completeRoundIfReady();
+        }
+        notifyAll();
+    }
+
+    private void putParameters(ParameterFrames connection) {
+        ByteBuffer frame = connection.begin(ParameterFrames.PARAMS, Integer.BYTES + ParameterFrames.rawBytes(parameters));
+
+        frame.putInt(version);
+        ParameterFrames.putRaw(frame, parameters);
+        pulledVersions.put(connection, version);
+    }
+
+    // Waits on this server's monitor; fails once the server is closed so handlers do not outlive it.
+    private void await() {
+        if (!running) {
+            throw new IllegalStateException("Parameter server closed");
+        }
+
+        try {
+            wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for workers", e);
+        }
+
+        if (!running) {
+            throw new IllegalStateException("Parameter server closed");
+        }
+    }
+
+    // Blocks until every worker has joined and left.
+    public synchronized void awaitCompletion() {
+        while (finished < workers) {
+            await();
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            running = false;
+            notifyAll();
+
+            for (ParameterFrames connection : connections) {
+                connection.close();
+            }
+        }
+
+        try {
+            serverSocket.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package network;
+
+import data.Dataset;
+import data.Image;
+import data.Tensor;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+// Trains a local copy of the network against a ParameterServer: each batch runs forward and backward locally,
+// and its gradients are pushed to the server, whose reply carries the parameters to train the next batch with.
+// The network must have the same architecture and precision as the server's.
+public class ParameterWorker implements AutoCloseable {
+
+    private final NeuralNetwork network;
+    private final List<Tensor> parameters;
+    private final List<Tensor> gradients;
+    private final List<Tensor> residuals;
+    private final boolean compress;
+    private final ParameterFrames connection;
+    private int version;
+
+    // With compress, gradients travel as int8 with one scale per tensor instead of in the network's precision.
+    public ParameterWorker(NeuralNetwork network, String host, int port, boolean compress) {
+        this.network = network;
+        this.parameters = ParameterFrames.parameters(network);
+        this.gradients = ParameterFrames.gradients(network);
+        this.residuals = new ArrayList<>();
+        this.compress = compress;
+
+        for (Tensor gradient : gradients) {
+            residuals.add(new Tensor(gradient.getPrecision(), 1, 1, 1, gradient.size()));
+        }
+
+        try {
+            this.connection = new ParameterFrames(new Socket(host, port));
+            connection.begin(ParameterFrames.HELLO, Long.BYTES + 1)
+                    .putLong(ParameterFrames.count(parameters))
+                    .put((byte) ModelCheckpoint.precisionCode(network.getPrecision()));
+            connection.send();
+            pull();
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Could not connect to parameter server " + host + ":" + port, e);
+        }
+    }
+
+    public void conductTraining(List<Image> images, int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+
+        for (int start = 0; start < images.size(); start += batchSize) {
+            trainBatch(images.subList(start, Math.min(start + batchSize, images.size())));
+        }
+    }
+
+    public void conductTraining(Dataset dataset, int batchSize) {
+        try (Dataset.BatchIterator batches = dataset.batches(batchSize)) {
+            while (batches.hasNext()) {
+                trainBatch(batches.next());
+            }
+        }
+    }
+
+    // Version of the parameters the worker currently holds; it counts the server's updates.
+    public int getVersion() {
+        return version;
+    }
+
+    private void trainBatch(List<Image> batch) {
+        network.accumulateGradients(batch);
+
+        try {
+            push(batch.size());
+            pull();
+        } catch (IOException e) {
+            throw new IllegalStateException("Lost connection to parameter server", e);
+        }
+    }
+
+    private void push(int batchSize) throws IOException {
+        long payload = compress ? ParameterFrames.int8Bytes(gradients) : ParameterFrames.rawBytes(gradients);
+        ByteBuffer frame = connection.begin(ParameterFrames.PUSH, Integer.BYTES + 1 + payload);
+
+        frame.putInt(batchSize);
+        frame.put(compress ? ParameterFrames.INT8 : ParameterFrames.RAW);
+
+        if (compress) {
+            ParameterFrames.putInt8(frame, gradients, residuals);
+        } else {
+            ParameterFrames.putRaw(frame, gradients);
+        }
+
+        for (Tensor gradient : gradients) {
+            gradient.fill(0);
+        }
+
+        connection.send();
+    }
+
+    private void pull() throws IOException {
+        ByteBuffer frame = connection.receive();
+
+        if (connection.type() == ParameterFrames.ERROR) {
+            byte[] message = new byte[frame.remaining()];
+            frame.get(message);
+            connection.close();
+            throw new IllegalStateException("Parameter server refused worker: " + new String(message, StandardCharsets.UTF_8));
+        }
+
+        version = frame.getInt();
+        ParameterFrames.getRaw(frame, parameters);
+    }
+
+    // Tells the server this worker is done, so synchronous rounds stop waiting for it.
+    @Override
+    public void close() {
+        try {
+            connection.begin(ParameterFrames.DONE, 0);
+            connection.send();
+        } catch (IOException ignored) {
+            // The server is gone; nothing waits for this worker.
+        } finally {
+            connection.close();
+        }
+    }
+}
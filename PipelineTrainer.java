@@ -0,0 +1,316 @@
+package network;
+
+import data.Dataset;
+import data.Image;
+import data.Tensor;
+import Layer.Layer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+public class PipelineTrainer implements AutoCloseable {
+
+    private final NeuralNetwork network;
+    private final List<NeuralNetwork> replicas;
+    private final int[] stageStarts;
+    private final Channel[] activations;
+    private final Channel[] gradients;
+    // Output errors per micro-batch, written and read only by the last stage.
+    private final Tensor[] errors;
+    private final ExecutorService executor;
+
+    private List<List<Image>> microBatches;
+
+    // One stage per layer.
+    public PipelineTrainer(NeuralNetwork network, int microBatches) {
+        this(network, everyLayer(network.getLayers().size()), microBatches);
+    }
+
+    // stageStarts holds the index of the first layer of each stage, starting with 0 and strictly increasing.
+    // Each micro-batch in flight runs on its own replica (replica 0 is the network itself), so layers keep
+    // their per-batch state between the forward and backward pass of the same micro-batch.
+    public PipelineTrainer(NeuralNetwork network, int[] stageStarts, int microBatches) {
+        int layerCount = network.getLayers().size();
+
+        if (microBatches < 1) {
+            throw new IllegalArgumentException("Micro-batch count must be positive: " + microBatches);
+        }
+        if (stageStarts.length < 1 || stageStarts[0] != 0) {
+            throw new IllegalArgumentException("The first stage must start at layer 0");
+        }
+        for (int s = 1; s < stageStarts.length; s++) {
+            if (stageStarts[s] <= stageStarts[s - 1] || stageStarts[s] >= layerCount) {
+                throw new IllegalArgumentException("Invalid stage start " + stageStarts[s] + " for " + layerCount + " layers");
+            }
+        }
+
+        this.network = network;
+        this.stageStarts = stageStarts.clone();
+        this.replicas = new ArrayList<>();
+        this.replicas.add(network);
+
+        for (int m = 1; m < microBatches; m++) {
+            replicas.add(network.replicate());
+        }
+
+        // A stage never has more than microBatches messages outstanding towards a neighbour.
+        this.activations = new Channel[stageStarts.length - 1];
+        this.gradients = new Channel[stageStarts.length - 1];
+
+        for (int s = 0; s < activations.length; s++) {
+            activations[s] = new Channel(microBatches);
+            gradients[s] = new Channel(microBatches);
+        }
+
+        this.errors = new Tensor[microBatches];
+        this.executor = Executors.newFixedThreadPool(stageStarts.length);
+    }
+
+    private static int[] everyLayer(int layerCount) {
+        int[] starts = new int[layerCount];
+
+        for (int i = 0; i < layerCount; i++) {
+            starts[i] = i;
+        }
+
+        return starts;
+    }
+
+    public void conductTraining(List<Image> images, int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+
+        for (int start = 0; start < images.size(); start += batchSize) {
+            trainBatch(images.subList(start, Math.min(start + batchSize, images.size())));
+        }
+    }
+
+    public void conductTraining(Dataset dataset, int batchSize) {
+        try (Dataset.BatchIterator batches = dataset.batches(batchSize)) {
+            while (batches.hasNext()) {
+                trainBatch(batches.next());
+            }
+        }
+    }
+
+    private void trainBatch(List<Image> batch) {
+        microBatches = split(batch);
+
+        List<Future<?>> stages = new ArrayList<>();
+
+        for (int s = 0; s < stageStarts.length; s++) {
+            int stage = s;
+            stages.add(executor.submit(() -> {
+                runStage(stage);
+                return null;
+            }));
+        }
+
+        await(stages);
+        network.applyGradients(batch.size());
+    }
+
+    private List<List<Image>> split(List<Image> batch) {
+        int count = Math.min(replicas.size(), batch.size());
+        int size = (batch.size() + count - 1) / count;
+        List<List<Image>> parts = new ArrayList<>();
+
+        for (int start = 0; start < batch.size(); start += size) {
+            parts.add(batch.subList(start, Math.min(start + size, batch.size())));
+        }
+
+        return parts;
+    }
+
+    // 1F1B schedule: stage s first runs enough forwards to fill the stages after it, then alternates one
+    // backward with one forward, and drains the remaining backwards. Messages travel in micro-batch order in
+    // both directions, so a channel only carries tensors and the receiver knows which micro-batch each is.
+    private void runStage(int stage) throws InterruptedException {
+        int count = microBatches.size();
+        int warmup = Math.min(stageStarts.length - 1 - stage, count);
+        int forwards = 0;
+        int backwards = 0;
+
+        while (forwards < warmup) {
+            forward(stage, forwards++);
+        }
+        while (backwards < count) {
+            if (forwards < count) {
+                forward(stage, forwards++);
+            }
+            backward(stage, backwards++);
+        }
+
+        reduceGradients(stage, count);
+    }
+
+    private void forward(int stage, int micro) throws InterruptedException {
+        NeuralNetwork replica = replicas.get(micro);
+        List<Layer> layers = replica.getLayers();
+        Tensor tensor = stage == 0 ? replica.toTrainingInput(microBatches.get(micro)) : activations[stage - 1].take();
+
+        for (int i = stageStarts[stage]; i < stageEnd(stage); i++) {
+            tensor = layers.get(i).forward(tensor);
+        }
+
+        if (stage < activations.length) {
+            activations[stage].put(tensor);
+        } else {
+            errors[micro] = replica.calculateErrors(tensor, microBatches.get(micro));
+        }
+    }
+
+    private void backward(int stage, int micro) throws InterruptedException {
+        List<Layer> layers = replicas.get(micro).getLayers();
+        Tensor error = stage < gradients.length ? gradients[stage].take() : errors[micro];
+
+        for (int i = stageEnd(stage) - 1; i >= Math.max(stageStarts[stage], network.getFrozenLayers()); i--) {
+            error = layers.get(i).backward(error);
+        }
+
+        if (stage > 0) {
+            gradients[stage - 1].put(error);
+        }
+    }
+
+    private int stageEnd(int stage) {
+        return stage + 1 < stageStarts.length ? stageStarts[stage + 1] : network.getLayers().size();
+    }
+
+    // Each stage sums its own layers' gradients into replica 0, so stages never touch the same arrays.
+    private void reduceGradients(int stage, int count) {
+        List<Layer> target = network.getLayers();
+
+        for (int i = stageStarts[stage]; i < stageEnd(stage); i++) {
+            Tensor into = target.get(i).getGradients();
+
+            if (into == null) {
+                continue;
+            }
+
+            for (int m = 1; m < count; m++) {
+                Tensor from = replicas.get(m).getLayers().get(i).getGradients();
+
+                if (into.isFloat()) {
+                    float[] sum = into.floatData();
+                    float[] part = from.floatData();
+
+                    for (int k = 0; k < sum.length; k++) {
+                        sum[k] += part[k];
+                        part[k] = 0;
+                    }
+                } else {
+                    double[] sum = into.data();
+                    double[] part = from.data();
+
+                    for (int k = 0; k < sum.length; k++) {
+                        sum[k] += part[k];
+                        part[k] = 0;
+                    }
+                }
+            }
+        }
+    }
+
+    // A failed stage leaves its neighbours blocked on a channel, so the others are cancelled and the channels
+    // emptied before the failure is reported.
+    private void await(List<Future<?>> stages) {
+        try {
+            for (Future<?> stage : stages) {
+                stage.get();
+            }
+        } catch (InterruptedException e) {
+            abort(stages);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Training interrupted", e);
+        } catch (ExecutionException e) {
+            abort(stages);
+            throw new IllegalStateException("Pipeline stage failed", e.getCause());
+        }
+    }
+
+    private void abort(List<Future<?>> stages) {
+        for (Future<?> stage : stages) {
+            stage.cancel(true);
+        }
+        for (Future<?> stage : stages) {
+            try {
+                stage.get();
+            } catch (Exception ignored) {
+                // Already reported or cancelled.
+            }
+        }
+        for (int s = 0; s < activations.length; s++) {
+            activations[s].clear();
+            gradients[s].clear();
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    // Bounded single-producer single-consumer ring buffer. Each side owns one counter and only reads the
+    // other's, so put and take need no locks; a side that finds the ring full or empty spins briefly, then parks.
+    private static final class Channel {
+
+        private final Tensor[] slots;
+        private final AtomicLong head = new AtomicLong();
+        private final AtomicLong tail = new AtomicLong();
+
+        Channel(int capacity) {
+            this.slots = new Tensor[capacity];
+        }
+
+        void put(Tensor tensor) throws InterruptedException {
+            long t = tail.get();
+
+            for (int spins = 0; t - head.get() == slots.length; spins++) {
+                pause(spins);
+            }
+
+            slots[(int) (t % slots.length)] = tensor;
+            tail.lazySet(t + 1);
+        }
+
+        Tensor take() throws InterruptedException {
+            long h = head.get();
+
+            for (int spins = 0; tail.get() == h; spins++) {
+                pause(spins);
+            }
+
+            int slot = (int) (h % slots.length);
+            Tensor tensor = slots[slot];
+            slots[slot] = null;
+            head.lazySet(h + 1);
+            return tensor;
+        }
+
+        void clear() {
+            Arrays.fill(slots, null);
+            head.set(0);
+            tail.set(0);
+        }
+
+        private static void pause(int spins) throws InterruptedException {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            if (spins < 100) {
+                Thread.onSpinWait();
+            } else {
+                LockSupport.parkNanos(10_000);
+            }
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package benchmark;
+
+import Layer.ConvolutionAlgorithm;
+import Layer.ConvolutionLayer;
+import Layer.FullyConnectedLayer;
+import Layer.Layer;
+import Layer.MaxPoolLayer;
+import data.Precision;
+import data.Tensor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// Checks the FLOAT path against the DOUBLE path layer by layer: each layer is built in both precisions with the
+// same parameters (rounded to float), fed the same batch and error, and its forward output, input gradient and
+// parameter gradients are compared with a relative tolerance. Exits with an exception listing every mismatch.
+// Usage: java benchmark.PrecisionParity [tolerance]
+public class PrecisionParity {
+
+    private static final long SEED = 123;
+    private static final int BATCH = 4;
+
+    private final double tolerance;
+    private final Random random = new Random(SEED);
+    private final List<String> failures = new ArrayList<>();
+    private int checks;
+
+    private PrecisionParity(double tolerance) {
+        this.tolerance = tolerance;
+    }
+
+    public static void main(String[] args) {
+        PrecisionParity parity = new PrecisionParity(args.length > 0 ? Double.parseDouble(args[0]) : 1e-4);
+
+        // Filter size, stride, input channels and input side.
+        for (int[] shape : new int[][]{{3, 1, 1, 28}, {5, 1, 1, 28}, {5, 2, 1, 28}, {3, 1, 4, 12}, {11, 1, 1, 32}}) {
+            for (ConvolutionAlgorithm algorithm : ConvolutionAlgorithm.values()) {
+                parity.checkConvolution(shape[0], shape[1], shape[2], shape[3], algorithm);
+            }
+        }
+
+        parity.checkMaxPool(3, 2, 8, 24);
+        parity.checkMaxPool(2, 2, 4, 12);
+        parity.checkFullyConnected(8 * 11 * 11, 10);
+        parity.checkFullyConnected(64, 256);
+
+        System.out.println(parity.checks + " comparisons, " + parity.failures.size() + " mismatches");
+
+        if (!parity.failures.isEmpty()) {
+            throw new IllegalStateException("FLOAT/DOUBLE parity failed:\n" + String.join("\n", parity.failures));
+        }
+    }
+
+    private void checkConvolution(int size, int stride, int channels, int side, ConvolutionAlgorithm algorithm) {
+        ConvolutionLayer reference = new ConvolutionLayer(size, stride, channels, side, side, SEED, 8, 0.1, algorithm, Precision.DOUBLE);
+        ConvolutionLayer single = new ConvolutionLayer(size, stride, channels, side, side, SEED, 8, 0.1, algorithm, Precision.FLOAT);
+
+        compare("conv" + size + "x" + size + ".s" + stride + ".c" + channels + "." + algorithm, reference, single, channels, side, side);
+    }
+
+    private void checkMaxPool(int window, int stride, int channels, int side) {
+        MaxPoolLayer reference = new MaxPoolLayer(stride, window, channels, side, side, Precision.DOUBLE);
+        MaxPoolLayer single = new MaxPoolLayer(stride, window, channels, side, side, Precision.FLOAT);
+
+        compare("maxPool" + window + ".s" + stride, reference, single, channels, side, side);
+    }
+
+    private void checkFullyConnected(int inputs, int outputs) {
+        FullyConnectedLayer reference = new FullyConnectedLayer(inputs, outputs, SEED, 0.1, Precision.DOUBLE);
+        FullyConnectedLayer single = new FullyConnectedLayer(inputs, outputs, SEED, 0.1, Precision.FLOAT);
+
+        compare("dense" + inputs + "x" + outputs, reference, single, 1, 1, inputs);
+    }
+
+    // Inputs and errors are drawn in double and rounded to float, so both layers see identical values. The
+    // reference starts from the float layer's parameters, so only the arithmetic differs.
+    private void compare(String name, Layer reference, Layer single, int channels, int rows, int cols) {
+        if (reference.getParameters() != null) {
+            Tensor from = single.getParameters();
+            Tensor to = reference.getParameters();
+
+            for (int k = 0; k < to.size(); k++) {
+                to.set(to.offset() + k, from.get(from.offset() + k));
+            }
+        }
+
+        Tensor input = randomTensor(BATCH, channels, rows, cols);
+        Tensor output = reference.forward(input.toPrecision(Precision.DOUBLE));
+
+        check(name + ".forward", output.toArray(), single.forward(input).toArray());
+
+        Tensor error = randomTensor(output.getBatch(), output.getChannels(), output.getRows(), output.getCols());
+        Tensor inputError = reference.backward(error.toPrecision(Precision.DOUBLE));
+
+        check(name + ".inputGradient", inputError.toArray(), single.backward(error).toArray());
+
+        if (reference.getGradients() != null) {
+            check(name + ".parameterGradient", reference.getGradients().toArray(), single.getGradients().toArray());
+        }
+    }
+
+    // Largest absolute difference relative to the largest reference magnitude (at least 1).
+    private void check(String name, double[] expected, double[] actual) {
+        checks++;
+
+        if (expected.length != actual.length) {
+            failures.add(name + ": size " + actual.length + " != " + expected.length);
+            return;
+        }
+
+        double maxError = 0;
+        double maxMagnitude = 1;
+
+        for (int k = 0; k < expected.length; k++) {
+            maxError = Math.max(maxError, Math.abs(expected[k] - actual[k]));
+            maxMagnitude = Math.max(maxMagnitude, Math.abs(expected[k]));
+        }
+
+        double relative = maxError / maxMagnitude;
+
+        if (!(relative <= tolerance)) {
+            failures.add(String.format("%s: relative error %.3e > %.1e", name, relative, tolerance));
+        }
+    }
+
+    private Tensor randomTensor(int batch, int channels, int rows, int cols) {
+        Tensor tensor = new Tensor(Precision.FLOAT, batch, channels, rows, cols);
+
+        for (int k = 0; k < tensor.size(); k++) {
+            tensor.set(k, random.nextGaussian());
+        }
+
+        return tensor;
+    }
+}
@@ -0,0 +1,42 @@
+package Layer;
+
+import data.Tensor;
+
+// Symmetric int8 quantization: q = round(x / scale) clamped to [-127, 127], with scale = maxAbs / 127.
+public class Quantization {
+
+    public static final int LEVELS = 127;
+
+    public static float scaleFor(double maxAbs) {
+        return maxAbs > 0 ? (float) (maxAbs / LEVELS) : 1f;
+    }
+
+    // Quantizes length values of source starting at the absolute index from, returning the scale used.
+    static float quantizeRow(Tensor source, int from, int length, byte[] target, int targetOffset) {
+        double maxAbs = 0;
+
+        for (int i = 0; i < length; i++) {
+            maxAbs = Math.max(maxAbs, Math.abs(source.get(from + i)));
+        }
+
+        float scale = scaleFor(maxAbs);
+
+        for (int i = 0; i < length; i++) {
+            target[targetOffset + i] = clamp(Math.round(source.get(from + i) / scale));
+        }
+
+        return scale;
+    }
+
+    static void quantize(float[] values, int offset, int length, float scale, byte[] target) {
+        float inverse = 1f / scale;
+
+        for (int i = 0; i < length; i++) {
+            target[i] = clamp(Math.round(values[offset + i] * inverse));
+        }
+    }
+
+    private static byte clamp(long value) {
+        return (byte) Math.max(-LEVELS, Math.min(LEVELS, value));
+    }
+}
@@ -0,0 +1,127 @@
+package Layer;
+
+import data.Kernels;
+import data.Tensor;
+
+import java.util.Arrays;
+
+// Inference-only int8 version of a ConvolutionLayer: filters are stored as signed bytes with one scale per
+// filter, inputs are quantized with a single calibrated scale, and products are accumulated in int.
+public class QuantizedConvolution {
+
+    private final byte[] filters;
+    private final float[] filterScales;
+    private final float inputScale;
+    private final int numFilters;
+    private final int filterSize;
+    private final int stepSize;
+
+    public QuantizedConvolution(ConvolutionLayer layer, float inputScale) {
+        Tensor source = layer.getFilters();
+
+        this.numFilters = layer.getNumFilters();
+        this.filterSize = layer.getFilterSize();
+        this.stepSize = layer.getStepSize();
+        this.inputScale = inputScale;
+        this.filters = new byte[numFilters * filterSize * filterSize];
+        this.filterScales = new float[numFilters];
+
+        int filterElements = filterSize * filterSize;
+
+        for (int f = 0; f < numFilters; f++) {
+            filterScales[f] = Quantization.quantizeRow(source, source.offset() + f * filterElements, filterElements, filters, f * filterElements);
+        }
+    }
+
+    // input and output are FLOAT tensors; quantizedInput and accumulator are caller-owned scratch space of at
+    // least input.size() and one input plane respectively.
+    public void infer(Tensor input, Tensor output, byte[] quantizedInput, int[] accumulator) {
+        int inRows = input.getRows();
+        int inCols = input.getCols();
+        int outRows = (inRows - filterSize) / stepSize + 1;
+        int outCols = (inCols - filterSize) / stepSize + 1;
+        int plane = inRows * inCols;
+        float[] out = output.floatData();
+
+        Quantization.quantize(input.floatData(), input.offset(), input.size(), inputScale, quantizedInput);
+
+        for (int b = 0; b < input.getBatch(); b++) {
+            for (int c = 0; c < input.getChannels(); c++) {
+                int inOffset = (b * input.getChannels() + c) * plane;
+
+                for (int f = 0; f < numFilters; f++) {
+                    float scale = inputScale * filterScales[f];
+                    int outOffset = output.index(b, c * numFilters + f, 0, 0);
+
+                    if (stepSize == 1) {
+                        convolveRows(quantizedInput, inOffset, inCols, f, accumulator, outRows, outCols);
+
+                        for (int i = 0; i < outRows; i++) {
+                            for (int j = 0; j < outCols; j++) {
+                                out[outOffset + i * outCols + j] = accumulator[i * inCols + j] * scale;
+                            }
+                        }
+                    } else {
+                        convolveStrided(quantizedInput, inOffset, inCols, f, accumulator, outRows, outCols);
+
+                        for (int p = 0; p < outRows * outCols; p++) {
+                            out[outOffset + p] = accumulator[p] * scale;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    // Stride 1: the accumulator keeps the input's row pitch, so every filter tap is one contiguous int8 axpy
+    // over the whole plane. The last filterSize - 1 columns of each accumulator row are never read.
+    private void convolveRows(byte[] in, int inOffset, int inCols, int f, int[] accumulator, int outRows, int outCols) {
+        int length = (outRows - 1) * inCols + outCols;
+        int filterOffset = f * filterSize * filterSize;
+
+        Arrays.fill(accumulator, 0, length, 0);
+
+        for (int x = 0; x < filterSize; x++) {
+            for (int y = 0; y < filterSize; y++) {
+                int weight = filters[filterOffset + x * filterSize + y];
+
+                if (weight != 0) {
+                    Kernels.INSTANCE.axpy(weight, in, inOffset + x * inCols + y, accumulator, 0, length);
+                }
+            }
+        }
+    }
+
+    private void convolveStrided(byte[] in, int inOffset, int inCols, int f, int[] accumulator, int outRows, int outCols) {
+        int filterOffset = f * filterSize * filterSize;
+
+        Arrays.fill(accumulator, 0, outRows * outCols, 0);
+
+        for (int i = 0; i < outRows; i++) {
+            int accumulatorRow = i * outCols;
+
+            for (int x = 0; x < filterSize; x++) {
+                for (int y = 0; y < filterSize; y++) {
+                    int weight = filters[filterOffset + x * filterSize + y];
+                    int inputRow = inOffset + (i * stepSize + x) * inCols + y;
+
+                    if (weight == 0) {
+                        continue;
+                    }
+
+                    for (int j = 0; j < outCols; j++) {
+                        accumulator[accumulatorRow + j] += weight * in[inputRow + j * stepSize];
+                    }
+                }
+            }
+        }
+    }
+
+    public int getNumFilters() {
+        return numFilters;
+    }
+
+    public long sizeInBytes() {
+        return filters.length + (long) filterScales.length * Float.BYTES + Float.BYTES;
+    }
+}
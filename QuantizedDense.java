@@ -0,0 +1,60 @@
+package Layer;
+
+import data.Kernels;
+import data.Tensor;
+
+// Inference-only int8 version of a FullyConnectedLayer: each output-major weight row is stored as signed bytes
+// with its own scale, so a row's dot product accumulates in int and is rescaled once before the LeakyReLU.
+public class QuantizedDense {
+
+    private final byte[] weights;
+    private final float[] rowScales;
+    private final float inputScale;
+    private final int inputLength;
+    private final int outputLength;
+    private final float leak;
+
+    public QuantizedDense(FullyConnectedLayer layer, float inputScale) {
+        Tensor source = layer.getWeights();
+
+        this.outputLength = source.getRows();
+        this.inputLength = source.getCols();
+        this.inputScale = inputScale;
+        this.leak = (float) layer.getLeak();
+        this.weights = new byte[outputLength * inputLength];
+        this.rowScales = new float[outputLength];
+
+        for (int j = 0; j < outputLength; j++) {
+            rowScales[j] = Quantization.quantizeRow(source, source.offset() + j * inputLength, inputLength, weights, j * inputLength);
+        }
+    }
+
+    // input and output are FLOAT tensors; quantizedInput is caller-owned scratch of at least input.size() bytes.
+    public void infer(Tensor input, Tensor output, byte[] quantizedInput) {
+        int batch = input.size() / inputLength;
+        float[] out = output.floatData();
+
+        Quantization.quantize(input.floatData(), input.offset(), input.size(), inputScale, quantizedInput);
+
+        for (int j = 0; j < outputLength; j++) {
+            int weightRow = j * inputLength;
+            float scale = inputScale * rowScales[j];
+
+            for (int b = 0; b < batch; b++) {
+                int inputRow = b * inputLength;
+                int sum = Kernels.INSTANCE.dot(weights, weightRow, quantizedInput, inputRow, inputLength);
+
+                float z = sum * scale;
+                out[output.offset() + b * outputLength + j] = Math.max(leak * z, z);
+            }
+        }
+    }
+
+    public int getOutputLength() {
+        return outputLength;
+    }
+
+    public long sizeInBytes() {
+        return weights.length + (long) rowScales.length * Float.BYTES + Float.BYTES;
+    }
+}
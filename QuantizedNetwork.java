@@ -0,0 +1,131 @@
+package network;
+
+import Layer.MaxPoolLayer;
+import Layer.QuantizedConvolution;
+import Layer.QuantizedDense;
+import data.Image;
+import data.Precision;
+import data.Tensor;
+
+import java.util.List;
+
+// An int8 copy of a trained network, produced by Quantizer. Convolution and dense steps run integer-accumulating
+// kernels; activations between steps are float. Buffers are preallocated, so an instance must not be shared
+// between threads.
+public class QuantizedNetwork {
+
+    static final int BATCH = 64;
+
+    static final int CONVOLUTION = 0;
+    static final int MAX_POOL = 1;
+    static final int FULLY_CONNECTED = 2;
+
+    private final int[] kinds;
+    private final QuantizedConvolution[] convolutions;
+    private final MaxPoolLayer[] pools;
+    private final QuantizedDense[] denses;
+    private final Tensor[] buffers;
+    private final byte[] quantizedInput;
+    private final int[] accumulator;
+    private final double scaleFactor;
+
+    QuantizedNetwork(int[] kinds, QuantizedConvolution[] convolutions, MaxPoolLayer[] pools, QuantizedDense[] denses,
+                     Tensor[] buffers, int maxPlane, double scaleFactor) {
+        this.kinds = kinds;
+        this.convolutions = convolutions;
+        this.pools = pools;
+        this.denses = denses;
+        this.buffers = buffers;
+        this.scaleFactor = scaleFactor;
+        this.accumulator = new int[maxPlane];
+
+        int maxInput = 0;
+        for (int i = 0; i < kinds.length; i++) {
+            maxInput = Math.max(maxInput, buffers[i].size());
+        }
+        this.quantizedInput = new byte[maxInput];
+    }
+
+    public int predict(Image image) {
+        return predict(List.of(image))[0];
+    }
+
+    public int[] predict(List<Image> images) {
+        int[] predictions = new int[images.size()];
+
+        for (int start = 0; start < images.size(); start += BATCH) {
+            int batch = Math.min(BATCH, images.size() - start);
+            Tensor input = buffers[0].samples(batch);
+
+            for (int b = 0; b < batch; b++) {
+                images.get(start + b).copyTo(input.floatData(), input.index(b, 0, 0, 0), scaleFactor);
+            }
+
+            Tensor output = execute(input, batch);
+
+            for (int b = 0; b < batch; b++) {
+                predictions[start + b] = NeuralNetwork.findMaxIndex(output, output.index(b, 0, 0, 0), output.sampleSize());
+            }
+        }
+
+        return predictions;
+    }
+
+    public float assessAccuracy(List<Image> images) {
+        int[] predictions = predict(images);
+        int correct = 0;
+
+        for (int i = 0; i < predictions.length; i++) {
+            if (predictions[i] == images.get(i).getLabel()) {
+                correct++;
+            }
+        }
+
+        return (float) correct / images.size();
+    }
+
+    private Tensor execute(Tensor input, int batch) {
+        Tensor activations = input;
+
+        for (int i = 0; i < kinds.length; i++) {
+            Tensor output = buffers[i + 1].samples(batch);
+
+            switch (kinds[i]) {
+                case CONVOLUTION:
+                    convolutions[i].infer(activations, output, quantizedInput, accumulator);
+                    break;
+                case MAX_POOL:
+                    pools[i].inferInto(activations, output, null);
+                    break;
+                case FULLY_CONNECTED:
+                    denses[i].infer(activations, output, quantizedInput);
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown step kind " + kinds[i]);
+            }
+
+            activations = output;
+        }
+
+        return activations;
+    }
+
+    // Bytes of quantized parameters and scales.
+    public long sizeInBytes() {
+        long bytes = 0;
+
+        for (int i = 0; i < kinds.length; i++) {
+            if (convolutions[i] != null) {
+                bytes += convolutions[i].sizeInBytes();
+            } else if (denses[i] != null) {
+                bytes += denses[i].sizeInBytes();
+            }
+        }
+
+        return bytes;
+    }
+
+    static Tensor buffer(int channels, int rows, int cols) {
+        return new Tensor(Precision.FLOAT, BATCH, channels, rows, cols);
+    }
+}
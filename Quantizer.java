@@ -0,0 +1,121 @@
+package network;
+
+import Layer.ConvolutionLayer;
+import Layer.FullyConnectedLayer;
+import Layer.InferenceContext;
+import Layer.Layer;
+import Layer.MaxPoolLayer;
+import Layer.Quantization;
+import Layer.QuantizedConvolution;
+import Layer.QuantizedDense;
+import data.Image;
+import data.Precision;
+import data.Tensor;
+
+import java.util.List;
+
+// Post-training quantization. Calibration runs the trained network over sample images and records the largest
+// absolute input seen by each convolution and dense layer; that becomes the layer's activation scale. Weights
+// are quantized per output channel (per filter, per dense output row).
+public class Quantizer {
+
+    public QuantizedNetwork quantize(NeuralNetwork network, List<Image> calibration) {
+        if (calibration.isEmpty()) {
+            throw new IllegalArgumentException("Calibration needs at least one image");
+        }
+
+        List<Layer> layers = network.getLayers();
+        double[] maxAbs = calibrate(network, calibration);
+
+        int steps = layers.size();
+        int[] kinds = new int[steps];
+        QuantizedConvolution[] convolutions = new QuantizedConvolution[steps];
+        MaxPoolLayer[] pools = new MaxPoolLayer[steps];
+        QuantizedDense[] denses = new QuantizedDense[steps];
+        Tensor[] buffers = new Tensor[steps + 1];
+
+        int channels = 1;
+        int rows = network.getInputRows();
+        int cols = network.getInputCols();
+        int maxPlane = 1;
+        buffers[0] = QuantizedNetwork.buffer(channels, rows, cols);
+
+        for (int i = 0; i < steps; i++) {
+            Layer layer = layers.get(i);
+
+            if (layer instanceof ConvolutionLayer) {
+                kinds[i] = QuantizedNetwork.CONVOLUTION;
+                convolutions[i] = new QuantizedConvolution((ConvolutionLayer) layer, Quantization.scaleFor(maxAbs[i]));
+                maxPlane = Math.max(maxPlane, rows * cols);
+            } else if (layer instanceof MaxPoolLayer) {
+                MaxPoolLayer pool = (MaxPoolLayer) layer;
+                kinds[i] = QuantizedNetwork.MAX_POOL;
+                pools[i] = new MaxPoolLayer(pool.getStepSize(), pool.getWindowSize(), channels, rows, cols, Precision.FLOAT);
+            } else if (layer instanceof FullyConnectedLayer) {
+                kinds[i] = QuantizedNetwork.FULLY_CONNECTED;
+                denses[i] = new QuantizedDense((FullyConnectedLayer) layer, Quantization.scaleFor(maxAbs[i]));
+            } else {
+                throw new IllegalArgumentException("Unsupported layer type");
+            }
+
+            channels = layer.getOutputLength();
+            rows = layer.getOutputRows();
+            cols = layer.getOutputCols();
+            buffers[i + 1] = QuantizedNetwork.buffer(channels, rows, cols);
+        }
+
+        return new QuantizedNetwork(kinds, convolutions, pools, denses, buffers, maxPlane, network.getScaleFactor());
+    }
+
+    // Largest absolute input of every layer over the calibration images.
+    private double[] calibrate(NeuralNetwork network, List<Image> calibration) {
+        List<Layer> layers = network.getLayers();
+        InferenceContext context = network.newInferenceContext();
+        double[] maxAbs = new double[layers.size()];
+
+        for (int start = 0; start < calibration.size(); start += QuantizedNetwork.BATCH) {
+            List<Image> batch = calibration.subList(start, Math.min(start + QuantizedNetwork.BATCH, calibration.size()));
+            Tensor activations = network.toInferenceInput(batch, context);
+
+            for (int i = 0; i < layers.size(); i++) {
+                for (int k = 0; k < activations.size(); k++) {
+                    maxAbs[i] = Math.max(maxAbs[i], Math.abs(activations.get(activations.offset() + k)));
+                }
+
+                activations = layers.get(i).infer(activations, context, i);
+            }
+        }
+
+        return maxAbs;
+    }
+
+    // Accuracy of both models on the same images, how often they agree, and parameter sizes.
+    public String compare(NeuralNetwork network, QuantizedNetwork quantized, List<Image> images) {
+        int[] predictions = quantized.predict(images);
+        InferenceContext context = network.newInferenceContext();
+        int reference = 0;
+        int correct = 0;
+        int agree = 0;
+
+        for (int i = 0; i < images.size(); i++) {
+            int expected = network.makePrediction(images.get(i), context);
+
+            reference += expected == images.get(i).getLabel() ? 1 : 0;
+            correct += predictions[i] == images.get(i).getLabel() ? 1 : 0;
+            agree += predictions[i] == expected ? 1 : 0;
+        }
+
+        long referenceBytes = 0;
+        for (Layer layer : network.getLayers()) {
+            Tensor parameters = layer.getParameters();
+
+            if (parameters != null) {
+                referenceBytes += (long) parameters.size() * (parameters.isFloat() ? Float.BYTES : Double.BYTES);
+            }
+        }
+
+        return String.format("%s accuracy %.4f, int8 accuracy %.4f, agreement %.4f over %d images; parameters %d -> %d bytes",
+                network.getPrecision(), (double) reference / images.size(), (double) correct / images.size(),
+                (double) agree / images.size(), images.size(), referenceBytes, quantized.sizeInBytes());
+    }
+}
@@ -0,0 +1,149 @@
+package data;
+
+public class ScalarKernels implements Kernels {
+
+    @Override
+    public double dot(double[] a, int aOffset, double[] b, int bOffset, int length) {
+        double sum = 0.0;
+
+        for (int i = 0; i < length; i++) {
+            sum += a[aOffset + i] * b[bOffset + i];
+        }
+
+        return sum;
+    }
+
+    @Override
+    public float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        float sum = 0f;
+
+        for (int i = 0; i < length; i++) {
+            sum += a[aOffset + i] * b[bOffset + i];
+        }
+
+        return sum;
+    }
+
+    @Override
+    public void axpy(double alpha, double[] x, int xOffset, double[] y, int yOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            y[yOffset + i] += alpha * x[xOffset + i];
+        }
+    }
+
+    @Override
+    public void axpy(float alpha, float[] x, int xOffset, float[] y, int yOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            y[yOffset + i] += alpha * x[xOffset + i];
+        }
+    }
+
+    @Override
+    public int dot(byte[] a, int aOffset, byte[] b, int bOffset, int length) {
+        int sum = 0;
+        for (int i = 0; i < length; i++) {
+            sum += a[aOffset + i] * b[bOffset + i];
+        }
+        return sum;
+    }
+
+    @Override
+    public void axpy(int alpha, byte[] x, int xOffset, int[] y, int yOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            y[yOffset + i] += alpha * x[xOffset + i];
+        }
+    }
+
+    @Override
+    public void butterfly(double[] x, int aRe, int aIm, int bRe, int bIm, double wr, double wi, int length) {
+        for (int i = 0; i < length; i++) {
+            double tr = x[bRe + i] * wr - x[bIm + i] * wi;
+            double ti = x[bRe + i] * wi + x[bIm + i] * wr;
+            x[bRe + i] = x[aRe + i] - tr;
+            x[bIm + i] = x[aIm + i] - ti;
+            x[aRe + i] += tr;
+            x[aIm + i] += ti;
+        }
+    }
+
+    @Override
+    public void complexMultiply(double[] x, int xRe, int xIm, double[] y, int yRe, int yIm, int length) {
+        for (int i = 0; i < length; i++) {
+            double re = x[xRe + i] * y[yRe + i] - x[xIm + i] * y[yIm + i];
+            double im = x[xRe + i] * y[yIm + i] + x[xIm + i] * y[yRe + i];
+            y[yRe + i] = re;
+            y[yIm + i] = im;
+        }
+    }
+
+    @Override
+    public void butterfly(float[] x, int aRe, int aIm, int bRe, int bIm, float wr, float wi, int length) {
+        for (int i = 0; i < length; i++) {
+            float tr = x[bRe + i] * wr - x[bIm + i] * wi;
+            float ti = x[bRe + i] * wi + x[bIm + i] * wr;
+            x[bRe + i] = x[aRe + i] - tr;
+            x[bIm + i] = x[aIm + i] - ti;
+            x[aRe + i] += tr;
+            x[aIm + i] += ti;
+        }
+    }
+
+    @Override
+    public void complexMultiply(float[] x, int xRe, int xIm, float[] y, int yRe, int yIm, int length) {
+        for (int i = 0; i < length; i++) {
+            float re = x[xRe + i] * y[yRe + i] - x[xIm + i] * y[yIm + i];
+            float im = x[xRe + i] * y[yIm + i] + x[xIm + i] * y[yRe + i];
+            y[yRe + i] = re;
+            y[yIm + i] = im;
+        }
+    }
+
+    @Override
+    public void add(double[] a, int aOffset, double[] b, int bOffset, double[] out, int outOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            out[outOffset + i] = a[aOffset + i] + b[bOffset + i];
+        }
+    }
+
+    @Override
+    public void add(float[] a, int aOffset, float[] b, int bOffset, float[] out, int outOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            out[outOffset + i] = a[aOffset + i] + b[bOffset + i];
+        }
+    }
+
+    @Override
+    public void scale(double[] a, int aOffset, double scalar, double[] out, int outOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            out[outOffset + i] = a[aOffset + i] * scalar;
+        }
+    }
+
+    @Override
+    public void scale(float[] a, int aOffset, float scalar, float[] out, int outOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            out[outOffset + i] = a[aOffset + i] * scalar;
+        }
+    }
+
+    @Override
+    public void leakyRelu(double[] in, int inOffset, double leak, double[] out, int outOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            double value = in[inOffset + i];
+            out[outOffset + i] = Math.max(leak * value, value);
+        }
+    }
+
+    @Override
+    public void leakyRelu(float[] in, int inOffset, float leak, float[] out, int outOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            float value = in[inOffset + i];
+            out[outOffset + i] = Math.max(leak * value, value);
+        }
+    }
+
+    @Override
+    public String name() {
+        return "scalar";
+    }
+}
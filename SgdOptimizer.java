@@ -0,0 +1,32 @@
+package Layer;
+
+import data.Tensor;
+
+public class SgdOptimizer implements Optimizer {
+
+    @Override
+    public State newState(Tensor parameters) {
+        return (params, gradients, learningRate, batchSize) -> {
+            double step = learningRate / batchSize;
+
+            if (params.isFloat()) {
+                float[] w = params.floatData();
+                float[] g = gradients.floatData();
+
+                for (int k = 0; k < w.length; k++) {
+                    w[k] -= (float) step * g[k];
+                    g[k] = 0;
+                }
+                return;
+            }
+
+            double[] w = params.data();
+            double[] g = gradients.data();
+
+            for (int k = 0; k < w.length; k++) {
+                w[k] -= step * g[k];
+                g[k] = 0;
+            }
+        };
+    }
+}
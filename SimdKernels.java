@@ -0,0 +1,329 @@
+package data;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+// Uses the widest vector shape the CPU supports (8 doubles / 16 floats on AVX-512); the tail shorter than
+// one vector is finished with scalar code. Loaded reflectively by Kernels so the rest of the tree does not
+// depend on the incubator module.
+class SimdKernels implements Kernels {
+
+    private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+    // Bytes are loaded a quarter-width vector at a time and widened into one full int vector.
+    private static final VectorSpecies<Byte> BYTES =
+            VectorSpecies.of(byte.class, VectorShape.forBitSize(Math.max(64, INTS.vectorBitSize() / 4)));
+
+    @Override
+    public double dot(double[] a, int aOffset, double[] b, int bOffset, int length) {
+        DoubleVector acc = DoubleVector.zero(DOUBLES);
+        int bound = DOUBLES.loopBound(length);
+        int i = 0;
+
+        for (; i < bound; i += DOUBLES.length()) {
+            DoubleVector va = DoubleVector.fromArray(DOUBLES, a, aOffset + i);
+            DoubleVector vb = DoubleVector.fromArray(DOUBLES, b, bOffset + i);
+            acc = va.fma(vb, acc);
+        }
+
+        double sum = acc.reduceLanes(VectorOperators.ADD);
+
+        for (; i < length; i++) {
+            sum += a[aOffset + i] * b[bOffset + i];
+        }
+
+        return sum;
+    }
+
+    @Override
+    public float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        FloatVector acc = FloatVector.zero(FLOATS);
+        int bound = FLOATS.loopBound(length);
+        int i = 0;
+
+        for (; i < bound; i += FLOATS.length()) {
+            FloatVector va = FloatVector.fromArray(FLOATS, a, aOffset + i);
+            FloatVector vb = FloatVector.fromArray(FLOATS, b, bOffset + i);
+            acc = va.fma(vb, acc);
+        }
+
+        float sum = acc.reduceLanes(VectorOperators.ADD);
+
+        for (; i < length; i++) {
+            sum += a[aOffset + i] * b[bOffset + i];
+        }
+
+        return sum;
+    }
+
+    @Override
+    public void axpy(double alpha, double[] x, int xOffset, double[] y, int yOffset, int length) {
+        DoubleVector va = DoubleVector.broadcast(DOUBLES, alpha);
+        int bound = DOUBLES.loopBound(length);
+        int i = 0;
+
+        for (; i < bound; i += DOUBLES.length()) {
+            DoubleVector vx = DoubleVector.fromArray(DOUBLES, x, xOffset + i);
+            DoubleVector vy = DoubleVector.fromArray(DOUBLES, y, yOffset + i);
+            vx.fma(va, vy).intoArray(y, yOffset + i);
+        }
+
+        for (; i < length; i++) {
+            y[yOffset + i] += alpha * x[xOffset + i];
+        }
+    }
+
+    @Override
+    public void axpy(float alpha, float[] x, int xOffset, float[] y, int yOffset, int length) {
+        FloatVector va = FloatVector.broadcast(FLOATS, alpha);
+        int bound = FLOATS.loopBound(length);
+        int i = 0;
+
+        for (; i < bound; i += FLOATS.length()) {
+            FloatVector vx = FloatVector.fromArray(FLOATS, x, xOffset + i);
+            FloatVector vy = FloatVector.fromArray(FLOATS, y, yOffset + i);
+            vx.fma(va, vy).intoArray(y, yOffset + i);
+        }
+
+        for (; i < length; i++) {
+            y[yOffset + i] += alpha * x[xOffset + i];
+        }
+    }
+
+    @Override
+    public int dot(byte[] a, int aOffset, byte[] b, int bOffset, int length) {
+        IntVector acc = IntVector.zero(INTS);
+        int i = 0;
+
+        for (; i + BYTES.length() <= length; i += INTS.length()) {
+            IntVector va = (IntVector) ByteVector.fromArray(BYTES, a, aOffset + i).convertShape(VectorOperators.B2I, INTS, 0);
+            IntVector vb = (IntVector) ByteVector.fromArray(BYTES, b, bOffset + i).convertShape(VectorOperators.B2I, INTS, 0);
+            acc = va.mul(vb).add(acc);
+        }
+
+        int sum = acc.reduceLanes(VectorOperators.ADD);
+
+        for (; i < length; i++) {
+            sum += a[aOffset + i] * b[bOffset + i];
+        }
+
+        return sum;
+    }
+
+    @Override
+    public void axpy(int alpha, byte[] x, int xOffset, int[] y, int yOffset, int length) {
+        int i = 0;
+
+        for (; i + BYTES.length() <= length; i += INTS.length()) {
+            IntVector vx = (IntVector) ByteVector.fromArray(BYTES, x, xOffset + i).convertShape(VectorOperators.B2I, INTS, 0);
+            vx.mul(alpha).add(IntVector.fromArray(INTS, y, yOffset + i)).intoArray(y, yOffset + i);
+        }
+
+        for (; i < length; i++) {
+            y[yOffset + i] += alpha * x[xOffset + i];
+        }
+    }
+
+    @Override
+    public void butterfly(double[] x, int aRe, int aIm, int bRe, int bIm, double wr, double wi, int length) {
+        int bound = DOUBLES.loopBound(length);
+        int i = 0;
+
+        for (; i < bound; i += DOUBLES.length()) {
+            DoubleVector br = DoubleVector.fromArray(DOUBLES, x, bRe + i);
+            DoubleVector bi = DoubleVector.fromArray(DOUBLES, x, bIm + i);
+            DoubleVector ar = DoubleVector.fromArray(DOUBLES, x, aRe + i);
+            DoubleVector ai = DoubleVector.fromArray(DOUBLES, x, aIm + i);
+            DoubleVector tr = br.mul(wr).sub(bi.mul(wi));
+            DoubleVector ti = br.mul(wi).add(bi.mul(wr));
+            ar.sub(tr).intoArray(x, bRe + i);
+            ai.sub(ti).intoArray(x, bIm + i);
+            ar.add(tr).intoArray(x, aRe + i);
+            ai.add(ti).intoArray(x, aIm + i);
+        }
+
+        for (; i < length; i++) {
+            double tr = x[bRe + i] * wr - x[bIm + i] * wi;
+            double ti = x[bRe + i] * wi + x[bIm + i] * wr;
+            x[bRe + i] = x[aRe + i] - tr;
+            x[bIm + i] = x[aIm + i] - ti;
+            x[aRe + i] += tr;
+            x[aIm + i] += ti;
+        }
+    }
+
+    @Override
+    public void complexMultiply(double[] x, int xRe, int xIm, double[] y, int yRe, int yIm, int length) {
+        int bound = DOUBLES.loopBound(length);
+        int i = 0;
+
+        for (; i < bound; i += DOUBLES.length()) {
+            DoubleVector xr = DoubleVector.fromArray(DOUBLES, x, xRe + i);
+            DoubleVector xi = DoubleVector.fromArray(DOUBLES, x, xIm + i);
+            DoubleVector yr = DoubleVector.fromArray(DOUBLES, y, yRe + i);
+            DoubleVector yi = DoubleVector.fromArray(DOUBLES, y, yIm + i);
+            xr.mul(yr).sub(xi.mul(yi)).intoArray(y, yRe + i);
+            xr.mul(yi).add(xi.mul(yr)).intoArray(y, yIm + i);
+        }
+
+        for (; i < length; i++) {
+            double re = x[xRe + i] * y[yRe + i] - x[xIm + i] * y[yIm + i];
+            double im = x[xRe + i] * y[yIm + i] + x[xIm + i] * y[yRe + i];
+            y[yRe + i] = re;
+            y[yIm + i] = im;
+        }
+    }
+
+    @Override
+    public void butterfly(float[] x, int aRe, int aIm, int bRe, int bIm, float wr, float wi, int length) {
+        int bound = FLOATS.loopBound(length);
+        int i = 0;
+
+        for (; i < bound; i += FLOATS.length()) {
+            FloatVector br = FloatVector.fromArray(FLOATS, x, bRe + i);
+            FloatVector bi = FloatVector.fromArray(FLOATS, x, bIm + i);
+            FloatVector ar = FloatVector.fromArray(FLOATS, x, aRe + i);
+            FloatVector ai = FloatVector.fromArray(FLOATS, x, aIm + i);
+            FloatVector tr = br.mul(wr).sub(bi.mul(wi));
+            FloatVector ti = br.mul(wi).add(bi.mul(wr));
+            ar.sub(tr).intoArray(x, bRe + i);
+            ai.sub(ti).intoArray(x, bIm + i);
+            ar.add(tr).intoArray(x, aRe + i);
+            ai.add(ti).intoArray(x, aIm + i);
+        }
+
+        for (; i < length; i++) {
+            float tr = x[bRe + i] * wr - x[bIm + i] * wi;
+            float ti = x[bRe + i] * wi + x[bIm + i] * wr;
+            x[bRe + i] = x[aRe + i] - tr;
+            x[bIm + i] = x[aIm + i] - ti;
+            x[aRe + i] += tr;
+            x[aIm + i] += ti;
+        }
+    }
+
+    @Override
+    public void complexMultiply(float[] x, int xRe, int xIm, float[] y, int yRe, int yIm, int length) {
+        int bound = FLOATS.loopBound(length);
+        int i = 0;
+
+        for (; i < bound; i += FLOATS.length()) {
+            FloatVector xr = FloatVector.fromArray(FLOATS, x, xRe + i);
+            FloatVector xi = FloatVector.fromArray(FLOATS, x, xIm + i);
+            FloatVector yr = FloatVector.fromArray(FLOATS, y, yRe + i);
+            FloatVector yi = FloatVector.fromArray(FLOATS, y, yIm + i);
+            xr.mul(yr).sub(xi.mul(yi)).intoArray(y, yRe + i);
+            xr.mul(yi).add(xi.mul(yr)).intoArray(y, yIm + i);
+        }
+
+        for (; i < length; i++) {
+            float re = x[xRe + i] * y[yRe + i] - x[xIm + i] * y[yIm + i];
+            float im = x[xRe + i] * y[yIm + i] + x[xIm + i] * y[yRe + i];
+            y[yRe + i] = re;
+            y[yIm + i] = im;
+        }
+    }
+
+    @Override
+    public void add(double[] a, int aOffset, double[] b, int bOffset, double[] out, int outOffset, int length) {
+        int bound = DOUBLES.loopBound(length);
+        int i = 0;
+
+        for (; i < bound; i += DOUBLES.length()) {
+            DoubleVector.fromArray(DOUBLES, a, aOffset + i)
+                    .add(DoubleVector.fromArray(DOUBLES, b, bOffset + i))
+                    .intoArray(out, outOffset + i);
+        }
+
+        for (; i < length; i++) {
+            out[outOffset + i] = a[aOffset + i] + b[bOffset + i];
+        }
+    }
+
+    @Override
+    public void add(float[] a, int aOffset, float[] b, int bOffset, float[] out, int outOffset, int length) {
+        int bound = FLOATS.loopBound(length);
+        int i = 0;
+
+        for (; i < bound; i += FLOATS.length()) {
+            FloatVector.fromArray(FLOATS, a, aOffset + i)
+                    .add(FloatVector.fromArray(FLOATS, b, bOffset + i))
+                    .intoArray(out, outOffset + i);
+        }
+
+        for (; i < length; i++) {
+            out[outOffset + i] = a[aOffset + i] + b[bOffset + i];
+        }
+    }
+
+    @Override
+    public void scale(double[] a, int aOffset, double scalar, double[] out, int outOffset, int length) {
+        int bound = DOUBLES.loopBound(length);
+        int i = 0;
+
+        for (; i < bound; i += DOUBLES.length()) {
+            DoubleVector.fromArray(DOUBLES, a, aOffset + i).mul(scalar).intoArray(out, outOffset + i);
+        }
+
+        for (; i < length; i++) {
+            out[outOffset + i] = a[aOffset + i] * scalar;
+        }
+    }
+
+    @Override
+    public void scale(float[] a, int aOffset, float scalar, float[] out, int outOffset, int length) {
+        int bound = FLOATS.loopBound(length);
+        int i = 0;
+
+        for (; i < bound; i += FLOATS.length()) {
+            FloatVector.fromArray(FLOATS, a, aOffset + i).mul(scalar).intoArray(out, outOffset + i);
+        }
+
+        for (; i < length; i++) {
+            out[outOffset + i] = a[aOffset + i] * scalar;
+        }
+    }
+
+    @Override
+    public void leakyRelu(double[] in, int inOffset, double leak, double[] out, int outOffset, int length) {
+        int bound = DOUBLES.loopBound(length);
+        int i = 0;
+
+        for (; i < bound; i += DOUBLES.length()) {
+            DoubleVector value = DoubleVector.fromArray(DOUBLES, in, inOffset + i);
+            value.max(value.mul(leak)).intoArray(out, outOffset + i);
+        }
+
+        for (; i < length; i++) {
+            double value = in[inOffset + i];
+            out[outOffset + i] = Math.max(leak * value, value);
+        }
+    }
+
+    @Override
+    public void leakyRelu(float[] in, int inOffset, float leak, float[] out, int outOffset, int length) {
+        int bound = FLOATS.loopBound(length);
+        int i = 0;
+
+        for (; i < bound; i += FLOATS.length()) {
+            FloatVector value = FloatVector.fromArray(FLOATS, in, inOffset + i);
+            value.max(value.mul(leak)).intoArray(out, outOffset + i);
+        }
+
+        for (; i < length; i++) {
+            float value = in[inOffset + i];
+            out[outOffset + i] = Math.max(leak * value, value);
+        }
+    }
+
+    @Override
+    public String name() {
+        return "simd(" + DOUBLES.length() + "x double, " + FLOATS.length() + "x float)";
+    }
+}
@@ -0,0 +1,155 @@
+package data;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+// Streams images from a source, shuffles them within a bounded buffer and assembles batches on a
+// background thread, so at most shuffleBufferSize + (prefetch + 1) batches of images are in memory.
+public class StreamingDataset implements Dataset {
+
+    private static final List<Image> END = new ArrayList<>();
+
+    private final Supplier<Stream<Image>> source;
+    private final int shuffleBufferSize;
+    private final int prefetch;
+    private final Random random;
+
+    public StreamingDataset(Supplier<Stream<Image>> source, int shuffleBufferSize, long seed) {
+        this(source, shuffleBufferSize, 2, seed);
+    }
+
+    public StreamingDataset(Supplier<Stream<Image>> source, int shuffleBufferSize, int prefetch, long seed) {
+        if (shuffleBufferSize < 1 || prefetch < 1) {
+            throw new IllegalArgumentException("Shuffle buffer and prefetch depth must be positive");
+        }
+
+        this.source = source;
+        this.shuffleBufferSize = shuffleBufferSize;
+        this.prefetch = prefetch;
+        this.random = new Random(seed);
+    }
+
+    public static StreamingDataset fromCsv(String path, int shuffleBufferSize, long seed) {
+        return new StreamingDataset(() -> new DataReader().streamData(path), shuffleBufferSize, seed);
+    }
+
+    public static StreamingDataset fromIdx(String imagesPath, String labelsPath, int shuffleBufferSize, long seed) {
+        return new StreamingDataset(() -> new IdxReader().readData(imagesPath, labelsPath).stream(), shuffleBufferSize, seed);
+    }
+
+    @Override
+    public BatchIterator batches(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+
+        return new PrefetchingIterator(batchSize, new Random(random.nextLong()));
+    }
+
+    private class PrefetchingIterator implements BatchIterator {
+
+        private final BlockingQueue<List<Image>> queue = new ArrayBlockingQueue<>(prefetch);
+        private final Thread producer;
+        private volatile RuntimeException failure;
+        private List<Image> next;
+
+        PrefetchingIterator(int batchSize, Random epochRandom) {
+            producer = new Thread(() -> produce(batchSize, epochRandom), "dataset-prefetch");
+            producer.setDaemon(true);
+            producer.start();
+        }
+
+        private void produce(int batchSize, Random epochRandom) {
+            List<Image> buffer = new ArrayList<>(shuffleBufferSize);
+            List<Image> batch = new ArrayList<>(batchSize);
+
+            try (Stream<Image> images = source.get()) {
+                Iterator<Image> iterator = images.iterator();
+
+                while (iterator.hasNext()) {
+                    Image image = iterator.next();
+
+                    if (buffer.size() < shuffleBufferSize) {
+                        buffer.add(image);
+                        continue;
+                    }
+
+                    int slot = epochRandom.nextInt(shuffleBufferSize);
+                    batch.add(buffer.get(slot));
+                    buffer.set(slot, image);
+                    batch = emitIfFull(batch, batchSize);
+                }
+
+                while (!buffer.isEmpty()) {
+                    int slot = epochRandom.nextInt(buffer.size());
+                    Image last = buffer.remove(buffer.size() - 1);
+                    batch.add(slot < buffer.size() ? buffer.set(slot, last) : last);
+                    batch = emitIfFull(batch, batchSize);
+                }
+
+                if (!batch.isEmpty()) {
+                    queue.put(batch);
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+
+            try {
+                queue.put(END);
+            } catch (InterruptedException ignored) {
+            }
+        }
+
+        private List<Image> emitIfFull(List<Image> batch, int batchSize) throws InterruptedException {
+            if (batch.size() < batchSize) {
+                return batch;
+            }
+
+            queue.put(batch);
+            return new ArrayList<>(batchSize);
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null) {
+                try {
+                    next = queue.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for data", e);
+                }
+            }
+
+            if (next == END && failure != null) {
+                throw failure;
+            }
+
+            return next != END;
+        }
+
+        @Override
+        public List<Image> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            List<Image> batch = next;
+            next = null;
+            return batch;
+        }
+
+        @Override
+        public void close() {
+            producer.interrupt();
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class Tensor {
+
+    // Exactly one of data and floatData is non-null, depending on the tensor's precision.
+    private final double[] data;
+    private final float[] floatData;
+    private final int offset;
+
+    private final int batch;
+    private final int channels;
+    private final int rows;
+    private final int cols;
+
+    private final int batchStride;
+    private final int channelStride;
+    private final int rowStride;
+
+    public Tensor(int channels, int rows, int cols) {
+        this(1, channels, rows, cols);
+    }
+
+    public Tensor(int batch, int channels, int rows, int cols) {
+        this(new double[batch * channels * rows * cols], 0, batch, channels, rows, cols);
+    }
+
+    public Tensor(Precision precision, int batch, int channels, int rows, int cols) {
+        this(precision == Precision.DOUBLE ? new double[batch * channels * rows * cols] : null,
+                precision == Precision.FLOAT ? new float[batch * channels * rows * cols] : null,
+                0, batch, channels, rows, cols);
+    }
+
+    public Tensor(double[] data, int offset, int batch, int channels, int rows, int cols) {
+        this(data, null, offset, batch, channels, rows, cols);
+    }
+
+    public Tensor(float[] floatData, int offset, int batch, int channels, int rows, int cols) {
+        this(null, floatData, offset, batch, channels, rows, cols);
+    }
+
+    private Tensor(double[] data, float[] floatData, int offset, int batch, int channels, int rows, int cols) {
+        int length = data != null ? data.length : floatData.length;
+
+        if (offset < 0 || offset + batch * channels * rows * cols > length) {
+            throw new IllegalArgumentException("Tensor shape " + batch + "x" + channels + "x" + rows + "x" + cols
+                    + " at offset " + offset + " does not fit in array of length " + length);
+        }
+
+        this.data = data;
+        this.floatData = floatData;
+        this.offset = offset;
+        this.batch = batch;
+        this.channels = channels;
+        this.rows = rows;
+        this.cols = cols;
+        this.rowStride = cols;
+        this.channelStride = rows * cols;
+        this.batchStride = channels * rows * cols;
+    }
+
+    public static Tensor wrap(double[] data, int channels, int rows, int cols) {
+        return new Tensor(data, 0, data.length / (channels * rows * cols), channels, rows, cols);
+    }
+
+    public static Tensor wrap(float[] data, int channels, int rows, int cols) {
+        return new Tensor(data, 0, data.length / (channels * rows * cols), channels, rows, cols);
+    }
+
+    public static Tensor fromMatrices(List<double[][]> matrices) {
+        int rows = matrices.get(0).length;
+        int cols = matrices.get(0)[0].length;
+        Tensor tensor = new Tensor(matrices.size(), rows, cols);
+
+        int index = 0;
+        for (double[][] matrix : matrices) {
+            for (int i = 0; i < rows; i++) {
+                System.arraycopy(matrix[i], 0, tensor.data, index, cols);
+                index += cols;
+            }
+        }
+
+        return tensor;
+    }
+
+    public List<double[][]> toMatrices() {
+        List<double[][]> matrices = new ArrayList<>();
+
+        for (int b = 0; b < batch; b++) {
+            for (int c = 0; c < channels; c++) {
+                double[][] matrix = new double[rows][cols];
+
+                for (int i = 0; i < rows; i++) {
+                    for (int j = 0; j < cols; j++) {
+                        matrix[i][j] = get(b, c, i, j);
+                    }
+                }
+
+                matrices.add(matrix);
+            }
+        }
+
+        return matrices;
+    }
+
+    public Tensor sample(int b) {
+        return new Tensor(data, floatData, offset + b * batchStride, 1, channels, rows, cols);
+    }
+
+    public Tensor channel(int b, int c) {
+        return new Tensor(data, floatData, offset + b * batchStride + c * channelStride, 1, 1, rows, cols);
+    }
+
+    // View of the first count samples.
+    public Tensor samples(int count) {
+        return new Tensor(data, floatData, offset, count, channels, rows, cols);
+    }
+
+    public Tensor reshape(int batch, int channels, int rows, int cols) {
+        if (batch * channels * rows * cols != size()) {
+            throw new IllegalArgumentException("Cannot reshape " + size() + " elements to "
+                    + batch + "x" + channels + "x" + rows + "x" + cols);
+        }
+        return new Tensor(data, floatData, offset, batch, channels, rows, cols);
+    }
+
+    public int index(int b, int c, int r, int col) {
+        return offset + b * batchStride + c * channelStride + r * rowStride + col;
+    }
+
+    public double get(int b, int c, int r, int col) {
+        return get(index(b, c, r, col));
+    }
+
+    public void set(int b, int c, int r, int col, double value) {
+        set(index(b, c, r, col), value);
+    }
+
+    public void add(int b, int c, int r, int col, double value) {
+        set(index(b, c, r, col), get(index(b, c, r, col)) + value);
+    }
+
+    // Absolute index into the backing array, as returned by index(...)
+    public double get(int index) {
+        return data != null ? data[index] : floatData[index];
+    }
+
+    public void set(int index, double value) {
+        if (data != null) {
+            data[index] = value;
+        } else {
+            floatData[index] = (float) value;
+        }
+    }
+
+    public void fill(double value) {
+        if (data != null) {
+            Arrays.fill(data, offset, offset + size(), value);
+        } else {
+            Arrays.fill(floatData, offset, offset + size(), (float) value);
+        }
+    }
+
+    public double[] toArray() {
+        double[] out = new double[size()];
+
+        if (data != null) {
+            System.arraycopy(data, offset, out, 0, out.length);
+        } else {
+            for (int i = 0; i < out.length; i++) {
+                out[i] = floatData[offset + i];
+            }
+        }
+
+        return out;
+    }
+
+    public Tensor toPrecision(Precision precision) {
+        if (getPrecision() == precision) {
+            return this;
+        }
+
+        Tensor converted = new Tensor(precision, batch, channels, rows, cols);
+
+        for (int i = 0; i < size(); i++) {
+            converted.set(i, get(offset + i));
+        }
+
+        return converted;
+    }
+
+    public boolean hasShape(int batch, int channels, int rows, int cols) {
+        return this.batch == batch && this.channels == channels && this.rows == rows && this.cols == cols;
+    }
+
+    public double[] data() {
+        return data;
+    }
+
+    public float[] floatData() {
+        return floatData;
+    }
+
+    public boolean isFloat() {
+        return floatData != null;
+    }
+
+    public Precision getPrecision() {
+        return floatData != null ? Precision.FLOAT : Precision.DOUBLE;
+    }
+
+    public int offset() {
+        return offset;
+    }
+
+    public int size() {
+        return batch * batchStride;
+    }
+
+    public int sampleSize() {
+        return batchStride;
+    }
+
+    public int getBatch() {
+        return batch;
+    }
+
+    public int getChannels() {
+        return channels;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+    public int getBatchStride() {
+        return batchStride;
+    }
+
+    public int getChannelStride() {
+        return channelStride;
+    }
+
+    public int getRowStride() {
+        return rowStride;
+    }
+}
@@ -0,0 +1,23 @@
+package network;
+
+// Callbacks for timing and throughput, registered with NeuralNetwork.addTrainingListener. Layer callbacks for
+// INFERENCE can arrive from several threads at once when accuracy is assessed on a ForkJoinPool.
+public interface TrainingListener {
+
+    enum Phase {
+        FORWARD,
+        BACKWARD,
+        INFERENCE
+    }
+
+    default void onLayer(int index, String layer, Phase phase, int batchSize, long nanos) {
+    }
+
+    // One forward, backward and parameter update over a batch; allocatedBytes is what the training thread allocated.
+    default void onStep(int batchSize, long nanos, long allocatedBytes) {
+    }
+
+    // One conductTraining call over a list or dataset.
+    default void onEpoch(int epoch, int images, long nanos) {
+    }
+}
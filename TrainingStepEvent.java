@@ -0,0 +1,23 @@
+package network;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("cnn.TrainingStep")
+@Label("Training Step")
+@Category("CNN")
+class TrainingStepEvent extends Event {
+
+    @Label("Batch Size")
+    int batchSize;
+
+    @Label("Images per Second")
+    double imagesPerSecond;
+
+    @Label("Allocated")
+    @DataAmount
+    long allocatedBytes;
+}
@@ -0,0 +1,438 @@
+package Layer;
+
+import data.Kernels;
+import data.Tensor;
+
+import java.util.Arrays;
+
+// Winograd minimal filtering for 3x3 filters at stride 1. F(2x2, 3x3) needs 16 multiplies per 2x2 output tile
+// instead of 36, F(4x4, 3x3) needs 36 per 4x4 tile instead of 144. Input planes are cut into overlapping tiles
+// stored element-major: element e of every tile in a pass (several planes at once) is one contiguous run, so
+// the input transform V = B^T d B and the filter step Y = A^T (U . V) A, with U = G g G^T folded into the
+// coefficients, are whole-pass axpys through Kernels with no per-row vector tails. Other filter sizes and
+// strides, and the filter gradients, use direct convolution.
+public class WinogradConvolutionEngine implements ConvolutionEngine {
+
+    // Tiles handled per pass; bounds the workspace to a few hundred KB.
+    private static final int TILES_PER_PASS = 512;
+
+    static final Transform F2 = new Transform(2,
+            new double[][]{{1, 0, -1, 0}, {0, 1, 1, 0}, {0, -1, 1, 0}, {0, 1, 0, -1}},
+            new double[][]{{1, 0, 0}, {0.5, 0.5, 0.5}, {0.5, -0.5, 0.5}, {0, 0, 1}},
+            new double[][]{{1, 1, 1, 0}, {0, 1, -1, -1}});
+
+    static final Transform F4 = new Transform(4,
+            new double[][]{{4, 0, -5, 0, 1, 0}, {0, -4, -4, 1, 1, 0}, {0, 4, -4, -1, 1, 0},
+                    {0, -2, -1, 2, 1, 0}, {0, 2, -1, -2, 1, 0}, {0, 4, 0, -5, 0, 1}},
+            new double[][]{{1.0 / 4, 0, 0}, {-1.0 / 6, -1.0 / 6, -1.0 / 6}, {-1.0 / 6, 1.0 / 6, -1.0 / 6},
+                    {1.0 / 24, 1.0 / 12, 1.0 / 6}, {1.0 / 24, -1.0 / 12, 1.0 / 6}, {0, 0, 1}},
+            new double[][]{{1, 1, 1, 1, 1, 0}, {0, 1, -1, 2, -2, 0}, {0, 1, 1, 4, 4, 0}, {0, 1, -1, 8, -8, 1}});
+
+    private final Transform transform;
+    private final DirectConvolutionEngine direct = new DirectConvolutionEngine();
+    // Layout of the last shape and workspace offset seen, memoized as ConvolutionEngine allows; the layout object
+    // itself is never modified.
+    private volatile Pass lastPass;
+
+    WinogradConvolutionEngine(Transform transform) {
+        this.transform = transform;
+    }
+
+    static boolean supports(int filterSize, int stepSize) {
+        return filterSize == 3 && stepSize == 1;
+    }
+
+    @Override
+    public void forward(Tensor input, Tensor filters, int stepSize, Tensor output, Tensor workspace) {
+        if (!supports(filters.getRows(), stepSize)) {
+            direct.forward(input, filters, stepSize, output, workspace);
+            return;
+        }
+
+        int numFilters = filters.getChannels();
+        int planes = input.getBatch() * input.getChannels();
+        Pass pass = lastPass;
+        if (pass == null || !pass.matches(input.getRows(), input.getCols(), workspace.offset())) {
+            lastPass = pass = new Pass(transform, input.getRows(), input.getCols(), output.getRows(), output.getCols(), workspace.offset());
+        }
+
+        // Planes are contiguous in both tensors: plane p of the input produces output channels p * numFilters + f.
+        for (int first = 0; first < planes; first += pass.planesPerPass) {
+            int count = Math.min(pass.planesPerPass, planes - first);
+            int inOffset = input.offset() + first * pass.inRows * pass.inCols;
+
+            if (input.isFloat()) {
+                transformInput(pass, input.floatData(), inOffset, count, workspace.floatData());
+            } else {
+                transformInput(pass, input.data(), inOffset, count, workspace.data());
+            }
+
+            for (int f = 0; f < numFilters; f++) {
+                int fOffset = filters.index(0, f, 0, 0);
+                int outOffset = output.offset() + (first * numFilters + f) * pass.outRows * pass.outCols;
+
+                if (input.isFloat()) {
+                    applyFilter(pass, filters.floatData(), fOffset, count, workspace.floatData());
+                    scatter(pass, workspace.floatData(), count, output.floatData(), outOffset, numFilters);
+                } else {
+                    applyFilter(pass, filters.data(), fOffset, count, workspace.data());
+                    scatter(pass, workspace.data(), count, output.data(), outOffset, numFilters);
+                }
+            }
+        }
+    }
+
+    private void transformInput(Pass pass, double[] in, int inOffset, int count, double[] w) {
+        Transform tr = pass.transform;
+        int t = tr.t;
+        int n = count * pass.tilesPerPlane;
+
+        for (int x = 0; x < t; x++) {
+            for (int y = 0; y < t; y++) {
+                int target = pass.d + (x * t + y) * n;
+
+                for (int q = 0; q < count; q++) {
+                    int plane = inOffset + q * pass.inRows * pass.inCols;
+
+                    for (int ti = 0; ti < pass.tileRows; ti++) {
+                        int row = ti * tr.m + x;
+
+                        for (int tj = 0; tj < pass.tileCols; tj++) {
+                            int col = tj * tr.m + y;
+                            w[target++] = row < pass.inRows && col < pass.inCols ? in[plane + row * pass.inCols + col] : 0;
+                        }
+                    }
+                }
+            }
+        }
+
+        // tmp = B^T d, then V = tmp B
+        for (int r = 0; r < t; r++) {
+            for (int y = 0; y < t; y++) {
+                combine(w, pass.tmp + (r * t + y) * n, pass.d + y * n, t * n, tr.btDouble, r * t, t, n);
+            }
+        }
+        for (int r = 0; r < t; r++) {
+            for (int s = 0; s < t; s++) {
+                combine(w, pass.v + (r * t + s) * n, pass.tmp + r * t * n, n, tr.btDouble, s * t, t, n);
+            }
+        }
+    }
+
+    private void transformInput(Pass pass, float[] in, int inOffset, int count, float[] w) {
+        Transform tr = pass.transform;
+        int t = tr.t;
+        int n = count * pass.tilesPerPlane;
+
+        for (int x = 0; x < t; x++) {
+            for (int y = 0; y < t; y++) {
+                int target = pass.d + (x * t + y) * n;
+
+                for (int q = 0; q < count; q++) {
+                    int plane = inOffset + q * pass.inRows * pass.inCols;
+
+                    for (int ti = 0; ti < pass.tileRows; ti++) {
+                        int row = ti * tr.m + x;
+
+                        for (int tj = 0; tj < pass.tileCols; tj++) {
+                            int col = tj * tr.m + y;
+                            w[target++] = row < pass.inRows && col < pass.inCols ? in[plane + row * pass.inCols + col] : 0;
+                        }
+                    }
+                }
+            }
+        }
+
+        for (int r = 0; r < t; r++) {
+            for (int y = 0; y < t; y++) {
+                combine(w, pass.tmp + (r * t + y) * n, pass.d + y * n, t * n, tr.btFloat, r * t, t, n);
+            }
+        }
+        for (int r = 0; r < t; r++) {
+            for (int s = 0; s < t; s++) {
+                combine(w, pass.v + (r * t + s) * n, pass.tmp + r * t * n, n, tr.btFloat, s * t, t, n);
+            }
+        }
+    }
+
+    private void applyFilter(Pass pass, double[] filter, int fOffset, int count, double[] w) {
+        Transform tr = pass.transform;
+        int t = tr.t;
+        int m = tr.m;
+        int n = count * pass.tilesPerPlane;
+
+        // U = G g G^T, then the stage-one coefficients A^T[p][i] * U[i][j], stored per (p, j)
+        for (int r = 0; r < t; r++) {
+            double g0 = tr.g[r][0] * filter[fOffset] + tr.g[r][1] * filter[fOffset + 3] + tr.g[r][2] * filter[fOffset + 6];
+            double g1 = tr.g[r][0] * filter[fOffset + 1] + tr.g[r][1] * filter[fOffset + 4] + tr.g[r][2] * filter[fOffset + 7];
+            double g2 = tr.g[r][0] * filter[fOffset + 2] + tr.g[r][1] * filter[fOffset + 5] + tr.g[r][2] * filter[fOffset + 8];
+
+            for (int s = 0; s < t; s++) {
+                w[pass.u + r * t + s] = g0 * tr.g[s][0] + g1 * tr.g[s][1] + g2 * tr.g[s][2];
+            }
+        }
+        for (int p = 0; p < m; p++) {
+            for (int j = 0; j < t; j++) {
+                for (int i = 0; i < t; i++) {
+                    w[pass.coefficients + (p * t + j) * t + i] = tr.at[p][i] * w[pass.u + i * t + j];
+                }
+            }
+        }
+
+        // Z[p][j] = sum over i of A^T[p][i] U[i][j] V[i][j], then Y[p][q] = sum over j of Z[p][j] A[j][q]
+        for (int p = 0; p < m; p++) {
+            for (int j = 0; j < t; j++) {
+                combine(w, pass.z + (p * t + j) * n, pass.v + j * n, t * n, w, pass.coefficients + (p * t + j) * t, t, n);
+            }
+        }
+        for (int p = 0; p < m; p++) {
+            for (int q = 0; q < m; q++) {
+                combine(w, pass.y + (p * m + q) * n, pass.z + p * t * n, n, tr.atDouble, q * t, t, n);
+            }
+        }
+    }
+
+    private void applyFilter(Pass pass, float[] filter, int fOffset, int count, float[] w) {
+        Transform tr = pass.transform;
+        int t = tr.t;
+        int m = tr.m;
+        int n = count * pass.tilesPerPlane;
+
+        for (int r = 0; r < t; r++) {
+            double g0 = tr.g[r][0] * filter[fOffset] + tr.g[r][1] * filter[fOffset + 3] + tr.g[r][2] * filter[fOffset + 6];
+            double g1 = tr.g[r][0] * filter[fOffset + 1] + tr.g[r][1] * filter[fOffset + 4] + tr.g[r][2] * filter[fOffset + 7];
+            double g2 = tr.g[r][0] * filter[fOffset + 2] + tr.g[r][1] * filter[fOffset + 5] + tr.g[r][2] * filter[fOffset + 8];
+
+            for (int s = 0; s < t; s++) {
+                w[pass.u + r * t + s] = (float) (g0 * tr.g[s][0] + g1 * tr.g[s][1] + g2 * tr.g[s][2]);
+            }
+        }
+        for (int p = 0; p < m; p++) {
+            for (int j = 0; j < t; j++) {
+                for (int i = 0; i < t; i++) {
+                    w[pass.coefficients + (p * t + j) * t + i] = tr.atFloat[p * t + i] * w[pass.u + i * t + j];
+                }
+            }
+        }
+
+        for (int p = 0; p < m; p++) {
+            for (int j = 0; j < t; j++) {
+                combine(w, pass.z + (p * t + j) * n, pass.v + j * n, t * n, w, pass.coefficients + (p * t + j) * t, t, n);
+            }
+        }
+        for (int p = 0; p < m; p++) {
+            for (int q = 0; q < m; q++) {
+                combine(w, pass.y + (p * m + q) * n, pass.z + p * t * n, n, tr.atFloat, q * t, t, n);
+            }
+        }
+    }
+
+    // w[target, target + n) = sum over k < count of coefficients[from + k] * w[source + k * stride, ... + n),
+    // skipping zero coefficients.
+    private static void combine(double[] w, int target, int source, int stride, double[] coefficients, int from, int count, int n) {
+        boolean first = true;
+
+        for (int k = 0; k < count; k++) {
+            double coefficient = coefficients[from + k];
+
+            if (coefficient == 0) {
+                continue;
+            }
+            if (first) {
+                Kernels.INSTANCE.scale(w, source + k * stride, coefficient, w, target, n);
+                first = false;
+            } else {
+                Kernels.INSTANCE.axpy(coefficient, w, source + k * stride, w, target, n);
+            }
+        }
+        if (first) {
+            Arrays.fill(w, target, target + n, 0);
+        }
+    }
+
+    private static void combine(float[] w, int target, int source, int stride, float[] coefficients, int from, int count, int n) {
+        boolean first = true;
+
+        for (int k = 0; k < count; k++) {
+            float coefficient = coefficients[from + k];
+
+            if (coefficient == 0) {
+                continue;
+            }
+            if (first) {
+                Kernels.INSTANCE.scale(w, source + k * stride, coefficient, w, target, n);
+                first = false;
+            } else {
+                Kernels.INSTANCE.axpy(coefficient, w, source + k * stride, w, target, n);
+            }
+        }
+        if (first) {
+            Arrays.fill(w, target, target + n, 0);
+        }
+    }
+
+    private void scatter(Pass pass, double[] w, int count, double[] out, int outOffset, int numFilters) {
+        int m = pass.transform.m;
+        int n = count * pass.tilesPerPlane;
+        int outPlane = pass.outRows * pass.outCols;
+
+        for (int q = 0; q < count; q++) {
+            int planeOut = outOffset + q * numFilters * outPlane;
+
+            for (int ti = 0; ti < pass.tileRows; ti++) {
+                int tileRow = q * pass.tilesPerPlane + ti * pass.tileCols;
+
+                for (int p = 0; p < m && ti * m + p < pass.outRows; p++) {
+                    int outRow = planeOut + (ti * m + p) * pass.outCols;
+
+                    // Element (p, c) of consecutive tiles lands m columns apart in the output row.
+                    for (int c = 0; c < m; c++) {
+                        int source = pass.y + (p * m + c) * n + tileRow;
+                        int columns = (pass.outCols - c + m - 1) / m;
+
+                        for (int tj = 0; tj < columns; tj++) {
+                            out[outRow + tj * m + c] = w[source + tj];
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+
+    private void scatter(Pass pass, float[] w, int count, float[] out, int outOffset, int numFilters) {
+        int m = pass.transform.m;
+        int n = count * pass.tilesPerPlane;
+        int outPlane = pass.outRows * pass.outCols;
+
+        for (int q = 0; q < count; q++) {
+            int planeOut = outOffset + q * numFilters * outPlane;
+
+            for (int ti = 0; ti < pass.tileRows; ti++) {
+                int tileRow = q * pass.tilesPerPlane + ti * pass.tileCols;
+
+                for (int p = 0; p < m && ti * m + p < pass.outRows; p++) {
+                    int outRow = planeOut + (ti * m + p) * pass.outCols;
+
+                    // Element (p, c) of consecutive tiles lands m columns apart in the output row.
+                    for (int c = 0; c < m; c++) {
+                        int source = pass.y + (p * m + c) * n + tileRow;
+                        int columns = (pass.outCols - c + m - 1) / m;
+
+                        for (int tj = 0; tj < columns; tj++) {
+                            out[outRow + tj * m + c] = w[source + tj];
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+
+    @Override
+    public void accumulateFilterGradients(Tensor input, Tensor dLdO, int filterSize, int stepSize, Tensor filterGradients, Tensor workspace) {
+        direct.accumulateFilterGradients(input, dLdO, filterSize, stepSize, filterGradients, workspace);
+    }
+
+    @Override
+    public int workspaceSize(int filterSize, int outputRows, int outputCols) {
+        if (filterSize != 3) {
+            return 0;
+        }
+        return new Pass(transform, outputRows + 2, outputCols + 2, outputRows, outputCols, 0).size;
+    }
+
+    static final class Transform {
+        final int m;
+        final int t;
+        final double[][] g;
+        final double[][] at;
+        final double[] btDouble;
+        final float[] btFloat;
+        final double[] atDouble;
+        final float[] atFloat;
+
+        Transform(int m, double[][] bt, double[][] g, double[][] at) {
+            this.m = m;
+            this.t = m + 2;
+            this.g = g;
+            this.at = at;
+            this.btDouble = flatten(bt);
+            this.btFloat = toFloat(btDouble);
+            this.atDouble = flatten(at);
+            this.atFloat = toFloat(atDouble);
+        }
+
+        private static double[] flatten(double[][] matrix) {
+            int cols = matrix[0].length;
+            double[] flat = new double[matrix.length * cols];
+
+            for (int i = 0; i < matrix.length; i++) {
+                System.arraycopy(matrix[i], 0, flat, i * cols, cols);
+            }
+            return flat;
+        }
+
+        private static float[] toFloat(double[] values) {
+            float[] result = new float[values.length];
+
+            for (int i = 0; i < values.length; i++) {
+                result[i] = (float) values[i];
+            }
+            return result;
+        }
+    }
+
+    // Tiling of one pass and its workspace offsets, with n = tiles in the pass: gathered tiles d and tmp
+    // (t*t x n each), V (t*t x n), Z (m*t x n), Y (m*m x n), then U and the folded coefficients.
+    private static final class Pass {
+        final Transform transform;
+        final int inRows;
+        final int inCols;
+        final int outRows;
+        final int outCols;
+        final int tileRows;
+        final int tileCols;
+        final int tilesPerPlane;
+        final int planesPerPass;
+        final int d;
+        final int tmp;
+        final int v;
+        final int z;
+        final int y;
+        final int u;
+        final int coefficients;
+        final int base;
+        final int size;
+
+        Pass(Transform transform, int inRows, int inCols, int outRows, int outCols, int base) {
+            int t = transform.t;
+            int m = transform.m;
+
+            this.transform = transform;
+            this.inRows = inRows;
+            this.inCols = inCols;
+            this.outRows = outRows;
+            this.outCols = outCols;
+            this.tileRows = (outRows + m - 1) / m;
+            this.tileCols = (outCols + m - 1) / m;
+            this.tilesPerPlane = tileRows * tileCols;
+            this.planesPerPass = Math.max(1, TILES_PER_PASS / tilesPerPlane);
+
+            int n = planesPerPass * tilesPerPlane;
+            this.d = base;
+            this.tmp = d + t * t * n;
+            this.v = tmp + t * t * n;
+            this.z = v + t * t * n;
+            this.y = z + m * t * n;
+            this.u = y + m * m * n;
+            this.coefficients = u + t * t;
+            this.base = base;
+            this.size = coefficients + m * t * t - base;
+        }
+
+        boolean matches(int inRows, int inCols, int base) {
+            return this.inRows == inRows && this.inCols == inCols && this.base == base;
+        }
+    }
+}